@@ -1,6 +1,9 @@
 package DBScan;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
+import org.json.JSONObject;
 
 import clustertest.*;
 import clustering.*;
@@ -15,7 +18,10 @@ public class DBScan implements Cluster {
     private double epsilon;
     private int minPoints;
     private boolean verbose;
-    private double[][] distances;
+    private DistanceMatrix distances;
+    // Where to keep the distances, null to pick by size
+    private DistanceStorage distanceStorage;
+    private DistanceMetric metric = DistanceMetric.EUCLIDEAN;
 
     /**
      * Initialize all parameters based on dataset.
@@ -78,64 +84,76 @@ public class DBScan implements Cluster {
         deviationsFromMean = 0;
     }
 
+    /**
+     * Use the parameters tuned for a dataset in the dataset registry, or the
+     * defaults if it has none.
+     *
+     * @param dataset path or name of the dataset
+     * @param verbosity
+     */
     public DBScan(String dataset, boolean verbosity) {
         verbose = verbosity;
         distances = null;
         epsilon = -1;
-        deviationsFromMean = 2;
-        minPoints = -1;
 
-        switch (dataset) {
-            case "data/movement_libras.csv":
-                minPoints = 8;
-                deviationsFromMean = 2.15;
-                break;
-            case "data/turkiye-student-evaluation_generic.csv":
-                minPoints = 8;
-                deviationsFromMean = .7;
-                break;
-            case "data/airfoil.data":
-                minPoints = 11;
-                deviationsFromMean = 4.14;
-                break;
-            case "data/seeds.data":
-                minPoints = 8;
-                deviationsFromMean = 2.15;
-                break;
-            case "data/synthetic_control.data":
-                minPoints = 20;
-                break;
-            case "data/dow_jones.data":
-                // Defaults work well
-                break;
-            case "data/SPECTF.csv":// Consider replacing specf dataset
-                minPoints = 10;
-                deviationsFromMean = -.1;
-                break;
-            case "data/gesture.csv":
-                minPoints = 25;
-                deviationsFromMean = 5.85;
-                break;
-            case "data/wholesale.csv":
-                // Defaults work well
-                break;
-            case "data/bupa.csv":
-                minPoints = 7;
-                deviationsFromMean = -0.17;
-                break;
+        JSONObject tuned = DatasetRegistry.getInstance().get(dataset).parameters("DBScan");
+        minPoints = tuned.optInt("minPoints", -1);
+        deviationsFromMean = tuned.optDouble("deviations", 2);
+    }
+
+    /**
+     * Choose where the distances are kept. LAZY keeps memory bounded on
+     * datasets too big for a full matrix, at the cost of computing rows again.
+     *
+     * @param storage where to keep the distances, null to pick by size
+     */
+    public void setDistanceStorage(DistanceStorage storage) {
+        distanceStorage = storage;
+    }
+
+    /**
+     * Choose the distance between points. Epsilon is found from the distances
+     * themselves, so the tuned deviations carry over to other metrics.
+     *
+     * @param metric
+     */
+    public void setDistanceMetric(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    private DistanceMatrix distancesTo(Dataset dataset) {
+        if (distanceStorage == null) {
+            return DataTools.distancesTo(dataset, dataset.isSinglePrecision(), metric);
         }
+        return DataTools.distancesTo(dataset, dataset.isSinglePrecision(), distanceStorage, metric);
+    }
+
+    /**
+     * Release the distances of the previous run, deleting their temporary
+     * file if they were mapped.
+     */
+    private void releaseDistances() {
+        if (distances instanceof Closeable) {
+            try {
+                ((Closeable) distances).close();
+            } catch (IOException e) {
+                System.out.println("Could not release the distances: " + e.getMessage());
+            }
+        }
+        distances = null;
     }
 
     @Override
-    public int[] run(double[][] dataset) {
-        distances = DataTools.distancesTo(dataset);
+    public int[] run(Dataset dataset) {
+        releaseDistances();
+        distances = distancesTo(dataset);
         // Set regionSize if regionSize not known
         if (epsilon == -1) {
             epsilon = setEpsilon(dataset);
         }
         // Set minimum points for core labels as the number of attributes if not set
         if (minPoints == -1) {
-            minPoints = Math.min(dataset.length / 5, dataset[0].length + (int) deviationsFromMean);
+            minPoints = Math.min(dataset.rows() / 5, dataset.columns() + (int) deviationsFromMean);
         }
 
         if (verbose) {
@@ -262,8 +280,8 @@ public class DBScan implements Cluster {
         return merged;
     }
 
-    public Integer[][] getNeighbors(double[][] dataset) {
-        int size = dataset.length;
+    public Integer[][] getNeighbors(Dataset dataset) {
+        int size = dataset.rows();
         Integer[][] neighbors = new Integer[size][];
 
         // For each vector in the dataset
@@ -275,16 +293,17 @@ public class DBScan implements Cluster {
         return neighbors;
     }
 
-    public Integer[] findNeighbors(int pointIndex, double[][] dataset) {
+    public Integer[] findNeighbors(int pointIndex, Dataset dataset) {
         ArrayList<Integer> foundNeighbors = new ArrayList<>();
 
         if (distances == null) {
-            distances = DataTools.distancesTo(dataset);
+            distances = distancesTo(dataset);
         }
 
-        for (int i = 0; i < dataset.length; i++) {
+        for (int i = 0; i < dataset.rows(); i++) {
 
-            if (distances[pointIndex][i] < epsilon && distances[pointIndex][i] > 0) {
+            double distance = distances.get(pointIndex, i);
+            if (distance < epsilon && distance > 0) {
                 foundNeighbors.add(i);
             }
         }
@@ -298,14 +317,16 @@ public class DBScan implements Cluster {
         return output;
     }
 
-    public int[] clusterNoise(int[] labels, Integer[][] neighbors, double[][] distances) {
+    public int[] clusterNoise(int[] labels, Integer[][] neighbors, DistanceMatrix distances) {
+        double[] row = new double[distances.size()];
         for (int i = 0; i < labels.length; i++) {
             int nearest = -1;
             double shortestDist = Double.MAX_VALUE;
-            for (int j = 0; j < distances[i].length; j++) {
-                if (j != i && distances[i][j] < shortestDist && labels[j] >= 0) {
+            distances.row(i, row);
+            for (int j = 0; j < row.length; j++) {
+                if (j != i && row[j] < shortestDist && labels[j] >= 0) {
                     nearest = j;
-                    shortestDist = distances[i][j];
+                    shortestDist = row[j];
                 }
             }
 
@@ -324,19 +345,14 @@ public class DBScan implements Cluster {
     }
 
     /**
-     * Find the Euclidean distance between a and b.
+     * Find the distance between a and b with the metric in use.
      *
      * @param a
      * @param b
      * @return
      */
     public double distance(double[] a, double[] b) {
-        double distance = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            double difference = a[i] - b[i];
-            distance += difference * difference;
-        }
-        return Math.sqrt(distance);
+        return metric.distance(a, b);
     }
 
     /**
@@ -345,15 +361,19 @@ public class DBScan implements Cluster {
      * @param dataset
      * @return
      */
-    public double setEpsilon(double[][] dataset) {
-        double[][] distances = DataTools.distancesTo(dataset);
+    public double setEpsilon(Dataset dataset) {
+        if (distances == null) {
+            distances = distancesTo(dataset);
+        }
         double averageSmall = 0.0;
-        double[] smalls = new double[distances.length];
+        double[] smalls = new double[distances.size()];
+        double[] row = new double[distances.size()];
 
-        for (int i = 0; i < distances.length; i++) {
+        for (int i = 0; i < distances.size(); i++) {
             double small = 999999999.0;
-            for (int j = 0; j < distances.length; j++) {
-                double nextDistance = distances[i][j];
+            distances.row(i, row);
+            for (int j = 0; j < row.length; j++) {
+                double nextDistance = row[j];
                 if (nextDistance < small && nextDistance > 0) {
                     small = nextDistance;
                 }
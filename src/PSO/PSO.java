@@ -1,17 +1,45 @@
 package PSO;
 
 import clustering.Cluster;
-
+import clustering.Dataset;
+import clustering.DistanceMetric;
+import clustering.NearestCenter;
+
+/**
+ * Particle swarm clustering: every particle is a centroid, scored by the mean
+ * distance of the inputs closest to it. The swarm is kept as flat arrays of
+ * particles * columns values, positions, velocities and best positions, so a
+ * generation allocates nothing and only does arithmetic on them.
+ */
 public class PSO implements Cluster
 {
+    // Score of a particle without inputs, and the bests before any score
+    private static final double EMPTY_SCORE = 9999999;
+    private static final double NO_LOCAL_BEST = 999999999;
+    private static final double NO_GLOBAL_BEST = 99999999;
+
     private double localMax;
     private double globalMax;
     private double randomMax;
     private int numbOfUpdates;
     private boolean verbose;
     private double momentum;
-    private Particle[] swarm;
     private int numbOfCentroids;
+    private DistanceMetric metric = DistanceMetric.EUCLIDEAN;
+    private NearestCenter search = new NearestCenter(metric);
+
+    // Particle p's values are at p * columns
+    private int columns;
+    private double[] positions;
+    private double[] velocities;
+    private double[] localBests;
+    private double[] globalBest;
+    private double[] bestLocalScores;
+    // Sum of the distances of every particle's inputs, and their number
+    private double[] scores;
+    private long[] members;
+    // Round positions and velocities to floats, like the dataset
+    private boolean singlePrecision;
 
     public PSO(double localMax, double globalMax, double randomMax, int numbOfUpdates, boolean verbose, double momentum, int numbOfCentroids)
     {
@@ -24,6 +52,21 @@ public class PSO implements Cluster
         this.numbOfCentroids = numbOfCentroids;
     }
 
+    public void setDistanceMetric(DistanceMetric metric)
+    {
+        this.metric = metric;
+        this.search = new NearestCenter(metric);
+    }
+
+    /**
+     * @return the search assigning inputs to particles, counting the
+     *         dimensions it summed and skipped
+     */
+    public NearestCenter getSearch()
+    {
+        return search;
+    }
+
     public void println(String msg)
     {
         if (this.verbose)
@@ -41,224 +84,140 @@ public class PSO implements Cluster
     }
 
 
-    public int[] run(double[][] inputs)
+    public int[] run(Dataset inputs)
     {
         println("----------------- PSO Begin --------------------------------");
-        int[] assignments = new int[inputs.length];
+        int[] assignments = new int[inputs.rows()];
 
-        swarm = swarmInitialization(inputs);
-        double[] globalBest = new double[inputs[0].length];
-        double globalBestScore = 99999999;
+        swarmInitialization(inputs);
+        double globalBestScore = NO_GLOBAL_BEST;
+        search.resetCounts();
+        SwarmAssignment assignment = new SwarmAssignment(inputs, numbOfCentroids, metric);
 
 
         for (int i = 0; i < numbOfUpdates; i++)
         {
-            println("Running PSO generation: " + i);
-
-            // assign all inputs to a cluster point
-            for (int j = 0; j < inputs.length; j++)
+            if (verbose)
             {
-                double shortestDist = 99999999;
-                int shortestIndex = -1;
-                for (int k = 0; k < swarm.length; k++)
-                {
-                    double currentDist = swarm[k].getDistanceTo(inputs[j]);
-
-                    if (currentDist < shortestDist)
-                    {
-                        shortestDist = currentDist;
-                        shortestIndex = k;
-                    }
-                }
-
-                swarm[shortestIndex].addInput(inputs[j]);
+                println("Running PSO generation: " + i);
             }
 
+            // assign all inputs to a cluster point
+            assignment.score(positions, scores, members);
+
             boolean updatedGlobalBest = false;
-            // get scores for all of the clusters to update global best
-            for (int j = 0; j < swarm.length; j++)
+            // get scores for all of the clusters to update the bests
+            for (int j = 0; j < numbOfCentroids; j++)
             {
-                double score = swarm[j].getScore();
-                println("Particle " + j + "'s score is: " + score);
+                double score = getScore(j);
+                if (verbose)
+                {
+                    println("Particle " + j + "'s score is: " + score);
+                }
                 if (score < globalBestScore)
                 {
-                    println("Updated global best score to: " + score);
+                    if (verbose)
+                    {
+                        println("Updated global best score to: " + score);
+                    }
                     globalBestScore = score;
-                    globalBest = swarm[j].getLocation();
+                    System.arraycopy(positions, j * columns, globalBest, 0, columns);
                     updatedGlobalBest = true;
                 }
+                if (score < bestLocalScores[j])
+                {
+                    bestLocalScores[j] = score;
+                    System.arraycopy(positions, j * columns, localBests, j * columns, columns);
+                }
             }
 
             if (updatedGlobalBest)
             {
-                println("Giving particles new global best");
-                // give the global best to the entire swarm
-                for (int j = 0; j < swarm.length; j++)
-                {
-                    swarm[j].updateGlobalBest(globalBest);
-                }
+                println("Giving particles the new global best");
             }
 
-
             println("Updating particle positions");
             // have all of the particles update
-            for (int j = 0; j < swarm.length; j++)
+            for (int j = 0; j < numbOfCentroids; j++)
             {
-                swarm[j].updatePosition();
-                swarm[j].update();
+                updatePosition(j);
             }
 
         }
 
         println("");
         // find cluster indexs for all points
-        for (int j = 0; j < inputs.length; j++)
-        {
-            double shortestDist = 99999999;
-            int shortestIndex = -1;
-            for (int k = 0; k < swarm.length; k++)
-            {
-                double currentDist = swarm[k].getDistanceTo(inputs[j]);
-
-                if (currentDist < shortestDist)
-                {
-                    shortestDist = currentDist;
-                    shortestIndex = k;
-                }
-            }
-
-            assignments[j] = shortestIndex;
-            //print("" + shortestIndex + ", ");
-        }
+        assignment.label(positions, assignments);
+        assignment.addCounts(search);
         println("");
+        println("Dimensions summed: " + search.operations() + ", skipped: " + search.savedOperations());
 
         println("----------------- PSO End --------------------------------");
         return assignments;
     }
 
-    public Particle[] swarmInitialization(double[][] inputs)
+    /**
+     * Start every particle at a copy of a random input, at rest.
+     */
+    public void swarmInitialization(Dataset inputs)
     {
-        Particle[] newSwarm = new Particle[numbOfCentroids];
+        columns = inputs.columns();
+        positions = new double[numbOfCentroids * columns];
+        velocities = new double[numbOfCentroids * columns];
+        localBests = new double[numbOfCentroids * columns];
+        globalBest = new double[columns];
+        bestLocalScores = new double[numbOfCentroids];
+        scores = new double[numbOfCentroids];
+        members = new long[numbOfCentroids];
+        singlePrecision = inputs.isSinglePrecision();
 
         for (int i = 0; i < this.numbOfCentroids; i++)
         {
-            int index = (int) (Math.random() * inputs.length);
-            println("Assigning Starting Centroid: " + i + " to input: " + index);
-            newSwarm[i] = new Particle(inputs[index], this.localMax, this.globalMax, this.randomMax, this.momentum, i);
-        }
-
-        return newSwarm;
-    }
-
-    private class Particle
-    {
-        private double localMax;
-        private double globalMax;
-        private double randomMax;
-        private double currentScore;
-        private double[] globalBest;
-        private double[] localBest;
-        private int numbOfMembers;
-        private double[] location;
-        private double momentum;
-        private double[] currentVelocity;
-        private double bestLocalScore;
-        private int id;
-
-        public Particle(double[] startingLocation, double localMax, double globalMax, double randomMax, double momentum, int id)
-        {
-            this.location = startingLocation;
-            this.localMax = localMax;
-            this.globalMax = globalMax;
-            this.randomMax = randomMax;
-            this.momentum = momentum;
-            this.initialize();
-            this.id = id;
-        }
-
-        public void initialize()
-        {
-            this.currentVelocity = new double[this.location.length];
-            this.localBest = new double[this.location.length];
-            this.bestLocalScore = 999999999;
-
-            for (int i = 0; i < this.currentVelocity.length; i++)
+            int index = (int) (Math.random() * inputs.rows());
+            if (verbose)
             {
-                this.currentVelocity[i] = 0.0;
-                this.localBest[i] = this.location[i];
+                println("Assigning Starting Centroid: " + i + " to input: " + index);
             }
-        }
-
-        public void update()
-        {
-            double currentScore = getScore();
-
-            if (currentScore < this.bestLocalScore)
+            for (int j = 0; j < columns; j++)
             {
-                this.bestLocalScore = currentScore;
-                this.localBest = this.location;
+                positions[i * columns + j] = inputs.get(index, j);
             }
+            System.arraycopy(positions, i * columns, localBests, i * columns, columns);
+            bestLocalScores[i] = NO_LOCAL_BEST;
         }
+    }
 
-        public void updateGlobalBest(double[] globalBest)
-        {
-            this.globalBest = globalBest;
-        }
-
-        public double getScore()
+    /**
+     * @return mean distance of a particle's inputs to it
+     */
+    private double getScore(int particle)
+    {
+        if (members[particle] == 0)
         {
-            if (numbOfMembers == 0)
-            {
-                return 9999999;
-            }
-            return currentScore / numbOfMembers;
+            return EMPTY_SCORE;
         }
+        return scores[particle] / members[particle];
+    }
 
-        public void addInput(double[] input)
-        {
-            numbOfMembers++;
-
-            currentScore += distanceFunction(input, location);
-        }
-
-        public double distanceFunction(double[] x1, double[] x2)
-        {
-            double dist = 0;
-
-            for (int i = 0; i < x1.length; i++)
+    private void updatePosition(int particle)
+    {
+        int offset = particle * columns;
+        for (int i = 0; i < columns; i++)
+        {
+            int index = offset + i;
+            velocities[index] = momentum * velocities[index]
+                    + Math.random() * globalMax * (positions[index] - globalBest[i])
+                    + Math.random() * localMax * (positions[index] - localBests[index]);
+            if (verbose)
             {
-                dist += (x1[i] - x2[i]) * (x1[i] - x2[i]);
+                println("Updating particle " + particle + "'s position with velocity x" + i + "=" + velocities[index]);
             }
-
-            return Math.sqrt(dist);
-        }
-
-        public void updatePosition()
-        {
-            numbOfMembers = 0;
-            currentScore = 0;
-
-            for (int i = 0; i < location.length; i++)
+            positions[index] += velocities[index];
+            if (singlePrecision)
             {
-                currentVelocity[i] = momentum * currentVelocity[i] + Math.random() * globalMax * pointDiff(location[i], globalBest[i]) + Math.random() * localMax * pointDiff(location[i], localBest[i]);
-                println("Updating particle " + this.id + "'s position with velocity x" + i + "=" + currentVelocity[i]);
-                location[i] += currentVelocity[i];
+                velocities[index] = (float) velocities[index];
+                positions[index] = (float) positions[index];
             }
         }
-
-        public double getDistanceTo(double[] x1)
-        {
-            return distanceFunction(x1, this.location);
-        }
-
-        public double pointDiff(double x1, double x2)
-        {
-            return x1 - x2;
-        }
-
-        public double[] getLocation()
-        {
-            return this.location;
-        }
     }
 }
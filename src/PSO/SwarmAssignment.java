@@ -0,0 +1,160 @@
+package PSO;
+
+import clustering.Dataset;
+import clustering.DistanceMetric;
+import clustering.NearestCenter;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Assigns every input to its closest particle as one parallel pass: the
+ * inputs are split into one contiguous part per thread, and every part adds
+ * the distances of its inputs to its own score and count per particle. The
+ * partial scores are then added up in part order, so a generation scores the
+ * same however the parts are scheduled. The parts and the task that forks
+ * them are made once per run and reused every generation, so a generation
+ * allocates nothing.
+ */
+class SwarmAssignment
+{
+    // Fewer inputs than this per part are not worth a thread
+    private static final int MIN_PART_ROWS = 1024;
+
+    private final Dataset inputs;
+    private final int particles;
+    private final Part[] parts;
+    // Forks every part, reinitialized before every pass like them
+    private final RecursiveAction root;
+
+    private double[] positions;
+    // Filled with the closest particle of every input, null to only score
+    private int[] assignments;
+
+    SwarmAssignment(Dataset inputs, int particles, DistanceMetric metric)
+    {
+        this.inputs = inputs;
+        this.particles = particles;
+        int rows = inputs.rows();
+        int count = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), rows / MIN_PART_ROWS));
+        parts = new Part[count];
+        for (int i = 0; i < count; i++)
+        {
+            parts[i] = new Part(new NearestCenter(metric), (int) ((long) rows * i / count),
+                    (int) ((long) rows * (i + 1) / count));
+        }
+        root = new RecursiveAction()
+        {
+            @Override
+            protected void compute()
+            {
+                invokeAll(parts);
+            }
+        };
+    }
+
+    /**
+     * Score the particles by the inputs closest to them.
+     * @param positions particles * columns values
+     * @param scores filled with the sum of the distances of every particle's inputs
+     * @param members filled with the number of every particle's inputs
+     */
+    void score(double[] positions, double[] scores, long[] members)
+    {
+        run(positions, null);
+        Arrays.fill(scores, 0.0);
+        Arrays.fill(members, 0L);
+        for (Part part : parts)
+        {
+            for (int p = 0; p < particles; p++)
+            {
+                scores[p] += part.scores[p];
+                members[p] += part.members[p];
+            }
+        }
+    }
+
+    /**
+     * Label every input with its closest particle.
+     * @param positions particles * columns values
+     * @param assignments filled with the particle of every input
+     */
+    void label(double[] positions, int[] assignments)
+    {
+        run(positions, assignments);
+    }
+
+    private void run(double[] positions, int[] assignments)
+    {
+        this.positions = positions;
+        this.assignments = assignments;
+        for (Part part : parts)
+        {
+            part.reinitialize();
+        }
+        if (parts.length == 1)
+        {
+            parts[0].compute();
+        }
+        else
+        {
+            root.reinitialize();
+            ForkJoinPool.commonPool().invoke(root);
+        }
+        this.positions = null;
+        this.assignments = null;
+    }
+
+    /**
+     * Add the counts of every part's search to another search.
+     */
+    void addCounts(NearestCenter search)
+    {
+        for (Part part : parts)
+        {
+            search.addCounts(part.search);
+            part.search.resetCounts();
+        }
+    }
+
+    /**
+     * The inputs [from, to) and their partial scores.
+     */
+    private class Part extends RecursiveAction
+    {
+        private final NearestCenter search;
+        private final int from, to;
+        private final double[] scores;
+        private final long[] members;
+
+        Part(NearestCenter search, int from, int to)
+        {
+            this.search = search;
+            this.from = from;
+            this.to = to;
+            this.scores = new double[particles];
+            this.members = new long[particles];
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (assignments != null)
+            {
+                for (int i = from; i < to; i++)
+                {
+                    assignments[i] = search.nearest(inputs, i, positions, particles);
+                }
+                return;
+            }
+            Arrays.fill(scores, 0.0);
+            Arrays.fill(members, 0L);
+            for (int i = from; i < to; i++)
+            {
+                int particle = search.nearest(inputs, i, positions, particles);
+                scores[particle] += search.distance();
+                members[particle]++;
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package aco;
 
 import DBScan.DBScan;
 import clustering.Cluster;
+import clustering.Dataset;
+import clustering.DistanceMetric;
 import clustertest.DataTools;
 
 import java.util.ArrayList;
@@ -16,6 +18,7 @@ public class ACO implements Cluster
     boolean verbose;
     double neighborhood;
     double gamma;
+    DistanceMetric metric = DistanceMetric.EUCLIDEAN;
 
     public ACO(double[] parameters, boolean verbose)
     {
@@ -24,17 +27,23 @@ public class ACO implements Cluster
         gamma = parameters[1];
     }
 
+    public void setDistanceMetric(DistanceMetric metric)
+    {
+        this.metric = metric;
+    }
+
     @Override
-    public int[] run(double[][] dataset)
+    public int[] run(Dataset dataset)
     {
         Random rand = new Random();
-        int size = (int)Math.round(Math.sqrt(dataset.length)) * 2;
-        int numAnts = dataset.length / 2;
+        int size = (int)Math.round(Math.sqrt(dataset.rows())) * 2;
+        int numAnts = dataset.rows() / 2;
         neighborhood = 5;
         Ant[][] ants = new Ant[size][size];
         DataPoint[][] points = new DataPoint[size][size];
         Ant[] allAnts = new Ant[numAnts];
-        DataPoint[] allPoints = new DataPoint[dataset.length];
+        DataPoint[] allPoints = new DataPoint[dataset.rows()];
+        DistanceMetric rowMetric = metric.forDataset(dataset);
 
         //place ants
         for(int k = 0; k < numAnts; k++)
@@ -54,7 +63,7 @@ public class ACO implements Cluster
         }
 
         //place points
-        for(int k = 0; k < dataset.length; k++)
+        for(int k = 0; k < dataset.rows(); k++)
         {
 
             while(true)
@@ -64,7 +73,7 @@ public class ACO implements Cluster
 
                 if(points[x][y] == null)
                 {
-                    points[x][y] = new DataPoint(x, y, size - 1, size - 1, dataset[k]);
+                    points[x][y] = new DataPoint(x, y, size - 1, size - 1, dataset, k, rowMetric);
                     allPoints[k] = points[x][y];
                     break;
                 }
@@ -276,7 +285,7 @@ public class ACO implements Cluster
             }
         }
 
-        double[][] data = new double[dataset.length][2];
+        double[][] data = new double[dataset.rows()][2];
 
         for(int k = 0; k < data.length; k++)
         {
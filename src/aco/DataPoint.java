@@ -1,34 +1,44 @@
 package aco;
 
+import clustering.Dataset;
+import clustering.DistanceMetric;
+
 /**
  * Created by joshua on 11/29/15.
  * Holds data point information, such as original values
+ * The original values are a row of the dataset, read in place.
  */
 public class DataPoint extends GridObject
 {
-    private double[] data;
+    private Dataset dataset;
+    private int row;
+    private DistanceMetric metric;
 
-    public DataPoint(int x, int y, int maxX, int maxY, double[] data)
+    public DataPoint(int x, int y, int maxX, int maxY, Dataset dataset, int row)
+    {
+        this(x, y, maxX, maxY, dataset, row, DistanceMetric.EUCLIDEAN);
+    }
+
+    public DataPoint(int x, int y, int maxX, int maxY, Dataset dataset, int row, DistanceMetric metric)
     {
         super(x, y, maxX, maxY);
-        this.data = data;
+        this.dataset = dataset;
+        this.row = row;
+        this.metric = metric;
     }
 
     //calculates distance between 2 points, using original points.
     public double distance(DataPoint point)
     {
-        double[] data2 = point.getData();
-        double sum = 0;
-        for(int k = 0; k < data.length; k++)
+        if (point.dataset == dataset)
         {
-            sum += Math.pow(data[k] - data2[k], 2);
+            return metric.distance(dataset, row, point.row);
         }
-
-        return Math.sqrt(sum);
+        return metric.distance(dataset, row, point.getData());
     }
 
     public double[] getData()
     {
-        return data;
+        return dataset.row(row);
     }
 }
@@ -5,5 +5,14 @@ package clustering;
  * @author David Bell
  */
 public interface Cluster {
-    int[] run(double[][] dataset);
+    int[] run(Dataset dataset);
+
+    /**
+     * Copy the rows into a contiguous Dataset and cluster it.
+     * @param dataset data[i][j]
+     * @return label of every row
+     */
+    default int[] run(double[][] dataset) {
+        return run(new Dataset(dataset));
+    }
 }
@@ -0,0 +1,66 @@
+package clustering;
+
+/**
+ * Condensed distance matrix kept on the heap. Values are kept in pages, so
+ * the matrix is not limited by the maximum size of one Java array. In single
+ * precision every value is a float, which halves the memory again.
+ */
+public class CondensedDistanceMatrix extends TriangularDistanceMatrix {
+
+    private static final int PAGE_BITS = 26;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final double[][] doublePages;
+    private final float[][] floatPages;
+
+    /**
+     * @param size number of rows of the dataset
+     * @param singlePrecision true to store the distances as floats
+     */
+    public CondensedDistanceMatrix(int size, boolean singlePrecision) {
+        super(size);
+        int pages = (int) ((length + PAGE_SIZE - 1) >>> PAGE_BITS);
+
+        if (singlePrecision) {
+            doublePages = null;
+            floatPages = new float[pages][];
+            for (int i = 0; i < pages; i++) {
+                floatPages[i] = new float[pageLength(i)];
+            }
+        } else {
+            floatPages = null;
+            doublePages = new double[pages][];
+            for (int i = 0; i < pages; i++) {
+                doublePages[i] = new double[pageLength(i)];
+            }
+        }
+    }
+
+    private int pageLength(int page) {
+        return (int) Math.min(PAGE_SIZE, length - ((long) page << PAGE_BITS));
+    }
+
+    @Override
+    public boolean isSinglePrecision() {
+        return floatPages != null;
+    }
+
+    @Override
+    public double get(long index) {
+        int page = (int) (index >>> PAGE_BITS);
+        int offset = (int) (index & PAGE_MASK);
+        return floatPages != null ? floatPages[page][offset] : doublePages[page][offset];
+    }
+
+    @Override
+    public void set(long index, double distance) {
+        int page = (int) (index >>> PAGE_BITS);
+        int offset = (int) (index & PAGE_MASK);
+        if (floatPages != null) {
+            floatPages[page][offset] = (float) distance;
+        } else {
+            doublePages[page][offset] = distance;
+        }
+    }
+}
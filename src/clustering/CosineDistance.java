@@ -0,0 +1,79 @@
+package clustering;
+
+/**
+ * Cosine distance, one minus the cosine of the angle between two vectors.
+ * Bound to a dataset with forDataset, the norms of its rows are computed once
+ * and every distance between rows costs a single dot product. Two zero
+ * vectors are at distance 0, a zero vector and any other at distance 1.
+ */
+public class CosineDistance implements DistanceMetric {
+
+    // Dataset the norms belong to, null if unbound
+    private final Dataset dataset;
+    private final double[] norms;
+
+    public CosineDistance() {
+        this.dataset = null;
+        this.norms = null;
+    }
+
+    /**
+     * Precompute the norm of every row of a dataset.
+     * @param dataset
+     */
+    public CosineDistance(Dataset dataset) {
+        this.dataset = dataset;
+        this.norms = new double[dataset.rows()];
+        for (int i = 0; i < norms.length; i++) {
+            norms[i] = Math.sqrt(dot(dataset, i, i));
+        }
+    }
+
+    @Override
+    public DistanceMetric forDataset(Dataset dataset) {
+        return dataset == this.dataset ? this : new CosineDistance(dataset);
+    }
+
+    @Override
+    public double distance(Dataset dataset, int a, int b) {
+        return cosine(dot(dataset, a, b), norm(dataset, a), norm(dataset, b));
+    }
+
+    @Override
+    public double distance(Dataset dataset, int row, double[] point) {
+        int columns = dataset.columns();
+        double dot = dataset.isSinglePrecision()
+                ? DistanceKernels.dot(dataset.floatValues(), dataset.offset(row), point, 0, columns)
+                : DistanceKernels.dot(dataset.values(), dataset.offset(row), point, 0, columns);
+        return cosine(dot, norm(dataset, row), Math.sqrt(DistanceKernels.dot(point, 0, point, 0, columns)));
+    }
+
+    @Override
+    public double distance(double[] a, double[] b) {
+        double dot = DistanceKernels.dot(a, 0, b, 0, a.length);
+        return cosine(dot, Math.sqrt(DistanceKernels.dot(a, 0, a, 0, a.length)),
+                Math.sqrt(DistanceKernels.dot(b, 0, b, 0, b.length)));
+    }
+
+    private double norm(Dataset dataset, int row) {
+        return dataset == this.dataset ? norms[row] : Math.sqrt(dot(dataset, row, row));
+    }
+
+    private static double dot(Dataset dataset, int a, int b) {
+        int columns = dataset.columns();
+        if (dataset.isSinglePrecision()) {
+            float[] values = dataset.floatValues();
+            return DistanceKernels.dot(values, dataset.offset(a), values, dataset.offset(b), columns);
+        }
+        double[] values = dataset.values();
+        return DistanceKernels.dot(values, dataset.offset(a), values, dataset.offset(b), columns);
+    }
+
+    private static double cosine(double dot, double normA, double normB) {
+        if (normA == 0 || normB == 0) {
+            return normA == normB ? 0.0 : 1.0;
+        }
+        // Rounding can push the cosine just past 1
+        return Math.max(0.0, 1.0 - dot / (normA * normB));
+    }
+}
@@ -0,0 +1,307 @@
+package clustering;
+
+/**
+ * A dataset stored row-major in one flat double array. Row i starts at
+ * offset(i) of values() and its columns are consecutive, so distance loops
+ * can walk the backing array directly instead of chasing one array per row.
+ * Rows may be further apart than their width (stride), which lets a view drop
+ * trailing columns without copying, and a view may list the rows of its
+ * backing array in any order, which shuffles a dataset without copying it.
+ * 
+ * A dataset is backed either by doubles or, in single precision, by floats.
+ * Normalized data loses nothing that matters to clustering in a float, and a
+ * float dataset takes half the memory and memory bandwidth. Use get, copyRow,
+ * addRowTo and the distance methods to read a dataset of either precision;
+ * values() is null for a single precision dataset.
+ */
+public class Dataset {
+
+    private final double[] values;
+    private final float[] floatValues;
+    private final int rows;
+    private final int columns;
+    private final int stride;
+    private final int start;
+    // Row i of this view is row order[i] of the backing array, null for i
+    private final int[] order;
+
+    /**
+     * Wrap a row-major array of rows * columns values.
+     * @param values
+     * @param rows
+     * @param columns
+     */
+    public Dataset(double[] values, int rows, int columns) {
+        this(values, rows, columns, columns, 0);
+    }
+
+    /**
+     * Wrap a strided view of a row-major array.
+     * @param values backing array
+     * @param rows number of rows
+     * @param columns number of columns of every row
+     * @param stride distance between the starts of consecutive rows
+     * @param start index of the first value of row 0
+     */
+    public Dataset(double[] values, int rows, int columns, int stride, int start) {
+        this(values, null, rows, columns, stride, start, null);
+    }
+
+    /**
+     * Wrap a row-major array of rows * columns floats as a single precision
+     * dataset.
+     * @param values
+     * @param rows
+     * @param columns
+     */
+    public Dataset(float[] values, int rows, int columns) {
+        this(null, values, rows, columns, columns, 0, null);
+    }
+
+    private Dataset(double[] values, float[] floatValues, int rows, int columns, int stride, int start, int[] order) {
+        int length = values != null ? values.length : floatValues.length;
+        // A permuted view only lists rows of a dataset already checked
+        if (order == null && (columns > stride || (rows > 0 && start + (long) (rows - 1) * stride + columns > length))) {
+            throw new IllegalArgumentException("Dataset does not fit in its backing array");
+        }
+        this.values = values;
+        this.floatValues = floatValues;
+        this.rows = rows;
+        this.columns = columns;
+        this.stride = stride;
+        this.start = start;
+        this.order = order;
+    }
+
+    /**
+     * Copy a 2D array into a new contiguous dataset.
+     * @param data data[i][j], every row the same length
+     */
+    public Dataset(double[][] data) {
+        this(flatten(data), data.length, data.length > 0 ? data[0].length : 0);
+    }
+
+    private static double[] flatten(double[][] data) {
+        int columns = data.length > 0 ? data[0].length : 0;
+        double[] values = new double[data.length * columns];
+        for (int i = 0; i < data.length; i++) {
+            System.arraycopy(data[i], 0, values, i * columns, columns);
+        }
+        return values;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int stride() {
+        return stride;
+    }
+
+    /**
+     * @return the backing array, shared with this dataset, or null if the
+     *         dataset is single precision
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * @return the backing array of a single precision dataset, shared with
+     *         this dataset, or null if the dataset is double precision
+     */
+    public float[] floatValues() {
+        return floatValues;
+    }
+
+    public boolean isSinglePrecision() {
+        return floatValues != null;
+    }
+
+    /**
+     * @param row
+     * @return index in values() of the first column of the row
+     */
+    public int offset(int row) {
+        return start + (order == null ? row : order[row]) * stride;
+    }
+
+    public double get(int row, int column) {
+        return values != null ? values[offset(row) + column] : floatValues[offset(row) + column];
+    }
+
+    public void set(int row, int column, double value) {
+        if (values != null) {
+            values[offset(row) + column] = value;
+        } else {
+            floatValues[offset(row) + column] = (float) value;
+        }
+    }
+
+    /**
+     * Copy one row into out.
+     * @param row
+     * @param out array of at least columns() values
+     * @return out
+     */
+    public double[] copyRow(int row, double[] out) {
+        int offset = offset(row);
+        if (values != null) {
+            System.arraycopy(values, offset, out, 0, columns);
+        } else {
+            for (int i = 0; i < columns; i++) {
+                out[i] = floatValues[offset + i];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Add one row to a running total, column by column.
+     * @param row
+     * @param total array of at least columns() values
+     */
+    public void addRowTo(int row, double[] total) {
+        int offset = offset(row);
+        if (values != null) {
+            for (int i = 0; i < columns; i++) {
+                total[i] += values[offset + i];
+            }
+        } else {
+            for (int i = 0; i < columns; i++) {
+                total[i] += floatValues[offset + i];
+            }
+        }
+    }
+
+    /**
+     * Squared Euclidean distance between two rows of this dataset.
+     * @param a
+     * @param b
+     * @return the squared distance
+     */
+    public double squaredDistance(int a, int b) {
+        return squaredDistance(a, this, b);
+    }
+
+    /**
+     * Squared Euclidean distance between a row of this dataset and a row of
+     * another dataset with the same columns. Two single precision rows are
+     * compared in float arithmetic.
+     * @param a row of this dataset
+     * @param other
+     * @param b row of other
+     * @return the squared distance
+     */
+    public double squaredDistance(int a, Dataset other, int b) {
+        int offsetA = offset(a);
+        int offsetB = other.offset(b);
+        if (values != null && other.values != null) {
+            return DistanceKernels.squaredEuclidean(values, offsetA, other.values, offsetB, columns);
+        }
+        if (floatValues != null && other.floatValues != null) {
+            return DistanceKernels.squaredEuclidean(floatValues, offsetA, other.floatValues, offsetB, columns);
+        }
+        if (floatValues != null) {
+            return DistanceKernels.squaredEuclidean(floatValues, offsetA, other.values, offsetB, columns);
+        }
+        return DistanceKernels.squaredEuclidean(other.floatValues, offsetB, values, offsetA, columns);
+    }
+
+    /**
+     * Squared Euclidean distance between a row and a point.
+     * @param row
+     * @param point array of at least columns() values
+     * @return the squared distance
+     */
+    public double squaredDistance(int row, double[] point) {
+        if (values != null) {
+            return DistanceKernels.squaredEuclidean(values, offset(row), point, 0, columns);
+        }
+        return DistanceKernels.squaredEuclidean(floatValues, offset(row), point, 0, columns);
+    }
+
+    /**
+     * @param row
+     * @return a copy of the row
+     */
+    public double[] row(int row) {
+        return copyRow(row, new double[columns]);
+    }
+
+    /**
+     * View of the first columns of every row, sharing the backing array.
+     * @param columns number of leading columns to keep
+     * @return the view
+     */
+    public Dataset firstColumns(int columns) {
+        return new Dataset(values, floatValues, rows, columns, stride, start, order);
+    }
+
+    /**
+     * View of the rows in a new order, sharing the backing array.
+     * @param permutation row i of the view is row permutation[i] of this dataset
+     * @return the view
+     */
+    public Dataset permute(int[] permutation) {
+        int[] newOrder = new int[permutation.length];
+        for (int i = 0; i < permutation.length; i++) {
+            newOrder[i] = order == null ? permutation[i] : order[permutation[i]];
+        }
+        return new Dataset(values, floatValues, permutation.length, columns, stride, start, newOrder);
+    }
+
+    /**
+     * @return true if the rows are packed in order without gaps from index 0
+     */
+    public boolean isContiguous() {
+        return stride == columns && start == 0 && order == null;
+    }
+
+    /**
+     * Copy the dataset into a new contiguous single precision dataset,
+     * rounding every value to the nearest float.
+     * @return the copy
+     */
+    public Dataset toSinglePrecision() {
+        float[] copy = new float[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            int offset = offset(i);
+            for (int j = 0; j < columns; j++) {
+                copy[i * columns + j] = values != null ? (float) values[offset + j] : floatValues[offset + j];
+            }
+        }
+        return new Dataset(copy, rows, columns);
+    }
+
+    /**
+     * Copy the dataset into a new contiguous double precision dataset.
+     * @return the copy
+     */
+    public Dataset toDoublePrecision() {
+        double[] copy = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            int offset = offset(i);
+            for (int j = 0; j < columns; j++) {
+                copy[i * columns + j] = values != null ? values[offset + j] : floatValues[offset + j];
+            }
+        }
+        return new Dataset(copy, rows, columns);
+    }
+
+    /**
+     * Copy the dataset into a 2D array.
+     * @return data[i][j]
+     */
+    public double[][] toArray() {
+        double[][] data = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            data[i] = row(i);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,52 @@
+package clustering;
+
+/**
+ * A dataset in memory read as a stream, so algorithms written for streams
+ * also run on loaded datasets. Batches of contiguous datasets are views of
+ * their rows, others are copied into a buffer reused by every batch.
+ */
+public class DatasetStream implements RowStream {
+
+    private final Dataset dataset;
+    private int position;
+    private double[] buffer;
+
+    public DatasetStream(Dataset dataset) {
+        this.dataset = dataset;
+        this.position = 0;
+    }
+
+    @Override
+    public int columns() {
+        return dataset.columns();
+    }
+
+    @Override
+    public Dataset next(int maxRows) {
+        int rows = Math.min(maxRows, dataset.rows() - position);
+        if (rows <= 0) {
+            return null;
+        }
+        int columns = dataset.columns();
+        Dataset batch;
+        if (dataset.isContiguous() && !dataset.isSinglePrecision()) {
+            batch = new Dataset(dataset.values(), rows, columns, dataset.stride(), dataset.offset(position));
+        } else {
+            if (buffer == null || buffer.length < rows * columns) {
+                buffer = new double[rows * columns];
+            }
+            double[] row = new double[columns];
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(dataset.copyRow(position + i, row), 0, buffer, i * columns, columns);
+            }
+            batch = new Dataset(buffer, rows, columns);
+        }
+        position += rows;
+        return batch;
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+    }
+}
@@ -0,0 +1,194 @@
+package clustering;
+
+/**
+ * The inner loops of every distance in the project, over length values of two
+ * arrays starting at the given offsets. Each loop is unrolled four ways into
+ * independent sums, so consecutive additions do not wait on each other and
+ * the JIT can keep several values per instruction in flight. Tune them here
+ * and every metric, algorithm and distance matrix picks it up.
+ *
+ * The sums are added in a different order than a plain loop, so results can
+ * differ from one in the last bits.
+ */
+public final class DistanceKernels {
+
+    private DistanceKernels() {
+    }
+
+    /**
+     * Sum of squared differences of length values of a and b.
+     */
+    public static double squaredEuclidean(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            double d0 = a[offsetA + i] - b[offsetB + i];
+            double d1 = a[offsetA + i + 1] - b[offsetB + i + 1];
+            double d2 = a[offsetA + i + 2] - b[offsetB + i + 2];
+            double d3 = a[offsetA + i + 3] - b[offsetB + i + 3];
+            sum0 += d0 * d0;
+            sum1 += d1 * d1;
+            sum2 += d2 * d2;
+            sum3 += d3 * d3;
+        }
+        for (; i < length; i++) {
+            double d = a[offsetA + i] - b[offsetB + i];
+            sum0 += d * d;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Sum of squared differences of length values of a and b in float arithmetic.
+     */
+    public static double squaredEuclidean(float[] a, int offsetA, float[] b, int offsetB, int length) {
+        float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            float d0 = a[offsetA + i] - b[offsetB + i];
+            float d1 = a[offsetA + i + 1] - b[offsetB + i + 1];
+            float d2 = a[offsetA + i + 2] - b[offsetB + i + 2];
+            float d3 = a[offsetA + i + 3] - b[offsetB + i + 3];
+            sum0 += d0 * d0;
+            sum1 += d1 * d1;
+            sum2 += d2 * d2;
+            sum3 += d3 * d3;
+        }
+        for (; i < length; i++) {
+            float d = a[offsetA + i] - b[offsetB + i];
+            sum0 += d * d;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Sum of squared differences of length values of a and b for a float row and a double point.
+     */
+    public static double squaredEuclidean(float[] a, int offsetA, double[] b, int offsetB, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            double d0 = a[offsetA + i] - b[offsetB + i];
+            double d1 = a[offsetA + i + 1] - b[offsetB + i + 1];
+            double d2 = a[offsetA + i + 2] - b[offsetB + i + 2];
+            double d3 = a[offsetA + i + 3] - b[offsetB + i + 3];
+            sum0 += d0 * d0;
+            sum1 += d1 * d1;
+            sum2 += d2 * d2;
+            sum3 += d3 * d3;
+        }
+        for (; i < length; i++) {
+            double d = a[offsetA + i] - b[offsetB + i];
+            sum0 += d * d;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Sum of absolute differences of length values of a and b.
+     */
+    public static double manhattan(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += Math.abs(a[offsetA + i] - b[offsetB + i]);
+            sum1 += Math.abs(a[offsetA + i + 1] - b[offsetB + i + 1]);
+            sum2 += Math.abs(a[offsetA + i + 2] - b[offsetB + i + 2]);
+            sum3 += Math.abs(a[offsetA + i + 3] - b[offsetB + i + 3]);
+        }
+        for (; i < length; i++) {
+            sum0 += Math.abs(a[offsetA + i] - b[offsetB + i]);
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Sum of absolute differences of length values of a and b in float arithmetic.
+     */
+    public static double manhattan(float[] a, int offsetA, float[] b, int offsetB, int length) {
+        float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += Math.abs(a[offsetA + i] - b[offsetB + i]);
+            sum1 += Math.abs(a[offsetA + i + 1] - b[offsetB + i + 1]);
+            sum2 += Math.abs(a[offsetA + i + 2] - b[offsetB + i + 2]);
+            sum3 += Math.abs(a[offsetA + i + 3] - b[offsetB + i + 3]);
+        }
+        for (; i < length; i++) {
+            sum0 += Math.abs(a[offsetA + i] - b[offsetB + i]);
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Sum of absolute differences of length values of a and b for a float row and a double point.
+     */
+    public static double manhattan(float[] a, int offsetA, double[] b, int offsetB, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += Math.abs(a[offsetA + i] - b[offsetB + i]);
+            sum1 += Math.abs(a[offsetA + i + 1] - b[offsetB + i + 1]);
+            sum2 += Math.abs(a[offsetA + i + 2] - b[offsetB + i + 2]);
+            sum3 += Math.abs(a[offsetA + i + 3] - b[offsetB + i + 3]);
+        }
+        for (; i < length; i++) {
+            sum0 += Math.abs(a[offsetA + i] - b[offsetB + i]);
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Dot product of length values of a and b.
+     */
+    public static double dot(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+            sum1 += a[offsetA + i + 1] * b[offsetB + i + 1];
+            sum2 += a[offsetA + i + 2] * b[offsetB + i + 2];
+            sum3 += a[offsetA + i + 3] * b[offsetB + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Dot product of length values of a and b in float arithmetic.
+     */
+    public static double dot(float[] a, int offsetA, float[] b, int offsetB, int length) {
+        float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+            sum1 += a[offsetA + i + 1] * b[offsetB + i + 1];
+            sum2 += a[offsetA + i + 2] * b[offsetB + i + 2];
+            sum3 += a[offsetA + i + 3] * b[offsetB + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Dot product of length values of a and b for a float row and a double point.
+     */
+    public static double dot(float[] a, int offsetA, double[] b, int offsetB, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+            sum1 += a[offsetA + i + 1] * b[offsetB + i + 1];
+            sum2 += a[offsetA + i + 2] * b[offsetB + i + 2];
+            sum3 += a[offsetA + i + 3] * b[offsetB + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+}
@@ -0,0 +1,33 @@
+package clustering;
+
+/**
+ * Symmetric matrix of the distances between every pair of rows of a dataset,
+ * with zeros on the diagonal.
+ */
+public interface DistanceMatrix {
+
+    /**
+     * @return number of rows (and columns) of the matrix
+     */
+    int size();
+
+    /**
+     * @param i
+     * @param j
+     * @return distance between rows i and j
+     */
+    double get(int i, int j);
+
+    /**
+     * Copy the distances from row i to every row into out.
+     * @param i
+     * @param out array of at least size() values
+     * @return out
+     */
+    default double[] row(int i, double[] out) {
+        for (int j = 0; j < size(); j++) {
+            out[j] = get(i, j);
+        }
+        return out;
+    }
+}
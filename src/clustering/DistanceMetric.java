@@ -0,0 +1,49 @@
+package clustering;
+
+/**
+ * A distance between rows of a dataset and points. Every algorithm, distance
+ * matrix and score takes one of these, so the metric can be swapped in one
+ * place. The loops themselves live in DistanceKernels.
+ */
+public interface DistanceMetric {
+
+    // Squared Euclidean distance, for comparisons where the root is wasted
+    DistanceMetric SQUARED_EUCLIDEAN = new EuclideanDistance(true);
+    DistanceMetric EUCLIDEAN = new EuclideanDistance(false);
+    DistanceMetric MANHATTAN = new ManhattanDistance();
+    // One minus the cosine similarity; bind it with forDataset to reuse norms
+    DistanceMetric COSINE = new CosineDistance();
+
+    /**
+     * @param dataset
+     * @param a
+     * @param b
+     * @return the distance between rows a and b of the dataset
+     */
+    double distance(Dataset dataset, int a, int b);
+
+    /**
+     * @param dataset
+     * @param row
+     * @param point array of dataset.columns() values
+     * @return the distance between a row of the dataset and a point
+     */
+    double distance(Dataset dataset, int row, double[] point);
+
+    /**
+     * @param a
+     * @param b
+     * @return the distance between two points
+     */
+    double distance(double[] a, double[] b);
+
+    /**
+     * Prepare the metric for the rows of one dataset, for metrics that can
+     * precompute something per row.
+     * @param dataset
+     * @return a metric giving the same distances, possibly faster on dataset
+     */
+    default DistanceMetric forDataset(Dataset dataset) {
+        return this;
+    }
+}
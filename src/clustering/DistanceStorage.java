@@ -0,0 +1,15 @@
+package clustering;
+
+/**
+ * Where the values of a distance matrix are kept.
+ */
+public enum DistanceStorage {
+    // Arrays on the Java heap
+    HEAP,
+    // Direct byte buffers outside the heap
+    DIRECT,
+    // A memory-mapped temporary file, paged in and out by the OS
+    MAPPED,
+    // Rows computed when first used, with only the most recent ones kept
+    LAZY
+}
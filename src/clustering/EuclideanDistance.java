@@ -0,0 +1,42 @@
+package clustering;
+
+/**
+ * Euclidean distance, or its square. The square orders distances the same way
+ * and skips the root, so nearest neighbor searches can use it.
+ */
+public class EuclideanDistance implements DistanceMetric {
+
+    private final boolean squared;
+
+    /**
+     * @param squared true to leave out the square root
+     */
+    public EuclideanDistance(boolean squared) {
+        this.squared = squared;
+    }
+
+    /**
+     * @return true if the square root is left out
+     */
+    public boolean isSquared() {
+        return squared;
+    }
+
+    @Override
+    public double distance(Dataset dataset, int a, int b) {
+        double distance = dataset.squaredDistance(a, b);
+        return squared ? distance : Math.sqrt(distance);
+    }
+
+    @Override
+    public double distance(Dataset dataset, int row, double[] point) {
+        double distance = dataset.squaredDistance(row, point);
+        return squared ? distance : Math.sqrt(distance);
+    }
+
+    @Override
+    public double distance(double[] a, double[] b) {
+        double distance = DistanceKernels.squaredEuclidean(a, 0, b, 0, a.length);
+        return squared ? distance : Math.sqrt(distance);
+    }
+}
@@ -0,0 +1,138 @@
+package clustering;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Distance matrix that computes a row of distances the first time it is
+ * used and keeps the most recently used rows in a bounded LRU cache. Memory
+ * stays at cachedRows * n values however big n is, and rows that are never
+ * read are never computed. Since the matrix is symmetric, (i, j) is also
+ * answered from a cached row j.
+ */
+public class LazyDistanceMatrix implements DistanceMatrix {
+
+    private final Dataset dataset;
+    private final DistanceMetric metric;
+    private final int cachedRows;
+    private final LinkedHashMap<Integer, double[]> cache;
+
+    // The row used last, checked before the cache
+    private int lastRow;
+    private double[] lastValues;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param dataset rows to find the distances between
+     * @param cachedRows maximum number of rows kept in memory
+     */
+    public LazyDistanceMatrix(Dataset dataset, int cachedRows) {
+        this(dataset, cachedRows, DistanceMetric.EUCLIDEAN);
+    }
+
+    /**
+     * @param dataset rows to find the distances between
+     * @param cachedRows maximum number of rows kept in memory
+     * @param metric distance between two rows
+     */
+    public LazyDistanceMatrix(Dataset dataset, int cachedRows, DistanceMetric metric) {
+        this.dataset = dataset;
+        this.metric = metric.forDataset(dataset);
+        this.cachedRows = Math.max(1, cachedRows);
+        this.cache = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+                return size() > LazyDistanceMatrix.this.cachedRows;
+            }
+        };
+        lastRow = -1;
+    }
+
+    @Override
+    public int size() {
+        return dataset.rows();
+    }
+
+    @Override
+    public synchronized double get(int i, int j) {
+        if (i == lastRow) {
+            hits++;
+            return lastValues[j];
+        }
+        if (j == lastRow) {
+            hits++;
+            return lastValues[i];
+        }
+
+        double[] values = cache.get(i);
+        if (values != null) {
+            hits++;
+            lastRow = i;
+            lastValues = values;
+            return values[j];
+        }
+        values = cache.get(j);
+        if (values != null) {
+            hits++;
+            lastRow = j;
+            lastValues = values;
+            return values[i];
+        }
+
+        return cachedRow(i)[j];
+    }
+
+    @Override
+    public synchronized double[] row(int i, double[] out) {
+        double[] values = cachedRow(i);
+        System.arraycopy(values, 0, out, 0, values.length);
+        return out;
+    }
+
+    /**
+     * Get row i from the cache, computing it on a miss.
+     */
+    private double[] cachedRow(int i) {
+        double[] values = i == lastRow ? lastValues : cache.get(i);
+        if (values != null) {
+            hits++;
+        } else {
+            misses++;
+            values = computeRow(i);
+            cache.put(i, values);
+        }
+        lastRow = i;
+        lastValues = values;
+        return values;
+    }
+
+    private double[] computeRow(int i) {
+        double[] values = new double[dataset.rows()];
+
+        for (int j = 0; j < values.length; j++) {
+            values[j] = metric.distance(dataset, i, j);
+        }
+        values[i] = 0.0;
+        return values;
+    }
+
+    /**
+     * @return number of lookups answered by a row already in memory
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return number of rows computed
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public int cachedRows() {
+        return cachedRows;
+    }
+}
@@ -0,0 +1,32 @@
+package clustering;
+
+/**
+ * Manhattan (city block) distance, the sum of absolute differences.
+ */
+public class ManhattanDistance implements DistanceMetric {
+
+    @Override
+    public double distance(Dataset dataset, int a, int b) {
+        int columns = dataset.columns();
+        if (dataset.isSinglePrecision()) {
+            float[] values = dataset.floatValues();
+            return DistanceKernels.manhattan(values, dataset.offset(a), values, dataset.offset(b), columns);
+        }
+        double[] values = dataset.values();
+        return DistanceKernels.manhattan(values, dataset.offset(a), values, dataset.offset(b), columns);
+    }
+
+    @Override
+    public double distance(Dataset dataset, int row, double[] point) {
+        int columns = dataset.columns();
+        if (dataset.isSinglePrecision()) {
+            return DistanceKernels.manhattan(dataset.floatValues(), dataset.offset(row), point, 0, columns);
+        }
+        return DistanceKernels.manhattan(dataset.values(), dataset.offset(row), point, 0, columns);
+    }
+
+    @Override
+    public double distance(double[] a, double[] b) {
+        return DistanceKernels.manhattan(a, 0, b, 0, a.length);
+    }
+}
@@ -0,0 +1,112 @@
+package clustering;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Condensed distance matrix kept outside the Java heap, either in direct
+ * byte buffers or in a memory-mapped temporary file. A mapped matrix can be
+ * far bigger than the heap, since the OS page cache decides which parts of it
+ * stay in memory. Values are kept in segments of 1 GB. The temporary file is
+ * unlinked as soon as it is mapped, so it never outlives the matrix.
+ */
+public class MappedDistanceMatrix extends TriangularDistanceMatrix implements Closeable {
+
+    private static final int SEGMENT_BYTE_BITS = 30;
+
+    private final boolean singlePrecision;
+    private final int entryBits;
+    private final long entryMask;
+    private final ByteBuffer[] segments;
+    private final File file;
+
+    /**
+     * @param size number of rows of the dataset
+     * @param singlePrecision true to store the distances as floats
+     * @param storage DIRECT for direct buffers, MAPPED for a temporary file
+     */
+    public MappedDistanceMatrix(int size, boolean singlePrecision, DistanceStorage storage) {
+        super(size);
+        this.singlePrecision = singlePrecision;
+        int widthBits = singlePrecision ? 2 : 3;
+        entryBits = SEGMENT_BYTE_BITS - widthBits;
+        entryMask = (1L << entryBits) - 1;
+
+        long bytes = length << widthBits;
+        int count = (int) ((bytes + (1L << SEGMENT_BYTE_BITS) - 1) >>> SEGMENT_BYTE_BITS);
+        segments = new ByteBuffer[count];
+
+        try {
+            if (storage == DistanceStorage.MAPPED) {
+                file = File.createTempFile("distances", ".bin");
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                        FileChannel channel = raf.getChannel()) {
+                    raf.setLength(bytes);
+                    for (int i = 0; i < count; i++) {
+                        long position = (long) i << SEGMENT_BYTE_BITS;
+                        long segment = Math.min(1L << SEGMENT_BYTE_BITS, bytes - position);
+                        segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, segment)
+                                .order(ByteOrder.nativeOrder());
+                    }
+                }
+                // The mappings outlive the file's name, so it is unlinked at
+                // once and goes away with them, where the OS allows it
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            } else {
+                file = null;
+                for (int i = 0; i < count; i++) {
+                    long position = (long) i << SEGMENT_BYTE_BITS;
+                    int segment = (int) Math.min(1L << SEGMENT_BYTE_BITS, bytes - position);
+                    segments[i] = ByteBuffer.allocateDirect(segment).order(ByteOrder.nativeOrder());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map the distance matrix", e);
+        }
+    }
+
+    @Override
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    @Override
+    public double get(long index) {
+        ByteBuffer segment = segments[(int) (index >>> entryBits)];
+        int offset = (int) (index & entryMask);
+        return singlePrecision ? segment.getFloat(offset << 2) : segment.getDouble(offset << 3);
+    }
+
+    @Override
+    public void set(long index, double distance) {
+        ByteBuffer segment = segments[(int) (index >>> entryBits)];
+        int offset = (int) (index & entryMask);
+        if (singlePrecision) {
+            segment.putFloat(offset << 2, (float) distance);
+        } else {
+            segment.putDouble(offset << 3, distance);
+        }
+    }
+
+    /**
+     * Drop the buffers, and delete the temporary file if it could not be
+     * unlinked when mapped. The memory itself is released once the buffers
+     * are garbage collected, so the matrix cannot be read after this.
+     */
+    @Override
+    public void close() {
+        Arrays.fill(segments, null);
+        if (file != null && file.exists()) {
+            file.delete();
+        }
+    }
+}
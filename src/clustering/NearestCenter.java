@@ -0,0 +1,184 @@
+package clustering;
+
+/**
+ * Finds the closest of a set of centers to a row of a dataset, as in the
+ * assignment step of k-means or PSO. Only the order of the distances matters
+ * there, so Euclidean distances are compared squared, without a root per
+ * pair. Euclidean and Manhattan distances are sums of non-negative terms, so
+ * the sum for a center is abandoned once it passes the best distance found so
+ * far: the remaining dimensions cannot make that center the closest. Other
+ * metrics are computed in full.
+ *
+ * The partial sum is checked every four dimensions, with the same unrolling
+ * as DistanceKernels, so a completed sum is exactly the kernel's. Counts of
+ * the dimensions summed and skipped are kept to measure the saving. One
+ * search is not thread safe, give every thread its own.
+ */
+public class NearestCenter {
+
+    private final DistanceMetric metric;
+    // Whether sums can be abandoned, and whether they are of squares
+    private final boolean bounded;
+    private final boolean squares;
+    // Whether the metric reports the root of the sum of squares
+    private final boolean root;
+
+    private double distance;
+    // A center of a flat array, copied out for metrics without bounded sums
+    private double[] center;
+    private long operations;
+    private long savedOperations;
+
+    public NearestCenter(DistanceMetric metric) {
+        this.metric = metric;
+        if (metric instanceof EuclideanDistance) {
+            bounded = true;
+            squares = true;
+            root = !((EuclideanDistance) metric).isSquared();
+        } else {
+            bounded = metric instanceof ManhattanDistance;
+            squares = false;
+            root = false;
+        }
+    }
+
+    /**
+     * Find the center closest to a row. Ties go to the lower index.
+     * @param dataset
+     * @param row
+     * @param centers points of dataset.columns() values each
+     * @return index of the closest center, -1 if there are none
+     */
+    public int nearest(Dataset dataset, int row, double[][] centers) {
+        int nearest = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < centers.length; i++) {
+            double current = bounded ? sum(dataset, row, centers[i], 0, best) : metric.distance(dataset, row, centers[i]);
+            if (current < best) {
+                best = current;
+                nearest = i;
+            }
+        }
+        distance = root ? Math.sqrt(best) : best;
+        return nearest;
+    }
+
+    /**
+     * Find the closest of centers kept one after another in a flat array, as
+     * by nearest(Dataset, int, double[][]).
+     * @param dataset
+     * @param row
+     * @param centers count centers of dataset.columns() values each
+     * @param count
+     * @return index of the closest center, -1 if there are none
+     */
+    public int nearest(Dataset dataset, int row, double[] centers, int count) {
+        int columns = dataset.columns();
+        int nearest = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            double current;
+            if (bounded) {
+                current = sum(dataset, row, centers, i * columns, best);
+            } else {
+                if (center == null || center.length != columns) {
+                    center = new double[columns];
+                }
+                System.arraycopy(centers, i * columns, center, 0, columns);
+                current = metric.distance(dataset, row, center);
+            }
+            if (current < best) {
+                best = current;
+                nearest = i;
+            }
+        }
+        distance = root ? Math.sqrt(best) : best;
+        return nearest;
+    }
+
+    /**
+     * @return distance of the last row searched to its closest center, in
+     *         the units of the metric
+     */
+    public double distance() {
+        return distance;
+    }
+
+    /**
+     * @return dimensions summed by every search so far
+     */
+    public long operations() {
+        return operations;
+    }
+
+    /**
+     * @return dimensions left out of sums that were abandoned
+     */
+    public long savedOperations() {
+        return savedOperations;
+    }
+
+    /**
+     * Add the counts of another search, such as one run by another thread.
+     * @param other
+     */
+    public void addCounts(NearestCenter other) {
+        operations += other.operations;
+        savedOperations += other.savedOperations;
+    }
+
+    public void resetCounts() {
+        operations = 0;
+        savedOperations = 0;
+    }
+
+    /**
+     * Sum of the squared or absolute differences of a row and the point at
+     * start of points, or any value above bound once the sum passes it.
+     */
+    private double sum(Dataset dataset, int row, double[] points, int start, double bound) {
+        int length = dataset.columns();
+        int offset = dataset.offset(row);
+        double[] values = dataset.values();
+        float[] floatValues = dataset.floatValues();
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            double d0, d1, d2, d3;
+            if (values != null) {
+                d0 = values[offset + i] - points[start + i];
+                d1 = values[offset + i + 1] - points[start + i + 1];
+                d2 = values[offset + i + 2] - points[start + i + 2];
+                d3 = values[offset + i + 3] - points[start + i + 3];
+            } else {
+                d0 = floatValues[offset + i] - points[start + i];
+                d1 = floatValues[offset + i + 1] - points[start + i + 1];
+                d2 = floatValues[offset + i + 2] - points[start + i + 2];
+                d3 = floatValues[offset + i + 3] - points[start + i + 3];
+            }
+            if (squares) {
+                sum0 += d0 * d0;
+                sum1 += d1 * d1;
+                sum2 += d2 * d2;
+                sum3 += d3 * d3;
+            } else {
+                sum0 += Math.abs(d0);
+                sum1 += Math.abs(d1);
+                sum2 += Math.abs(d2);
+                sum3 += Math.abs(d3);
+            }
+            double partial = (sum0 + sum1) + (sum2 + sum3);
+            if (partial > bound) {
+                operations += i + 4;
+                savedOperations += length - i - 4;
+                return partial;
+            }
+        }
+        for (; i < length; i++) {
+            double d = values != null ? values[offset + i] - points[start + i] : floatValues[offset + i] - points[start + i];
+            sum0 += squares ? d * d : Math.abs(d);
+        }
+        operations += length;
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+}
@@ -0,0 +1,36 @@
+package clustering;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A dataset read a batch of rows at a time, for datasets too large to hold in
+ * memory at once. The stream can be read from the start again with reset, so
+ * algorithms can make several passes.
+ */
+public interface RowStream extends Closeable {
+
+    /**
+     * @return number of values of every row
+     */
+    int columns();
+
+    /**
+     * Read the next rows. The batch may share memory with the stream, so it
+     * is only valid until the next call.
+     * @param maxRows most rows to read
+     * @return the rows read, null once every row has been read
+     * @throws IOException
+     */
+    Dataset next(int maxRows) throws IOException;
+
+    /**
+     * Go back to the first row.
+     * @throws IOException
+     */
+    void reset() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,83 @@
+package clustering;
+
+/**
+ * Base of the distance matrices that store only the upper triangle, without
+ * the diagonal, so n rows take n(n-1)/2 values instead of n*n. Entry (i, j),
+ * i < j, lives at a long index in the condensed triangle, and the distances
+ * from row i to rows i+1, i+2, ... are consecutive.
+ */
+public abstract class TriangularDistanceMatrix implements DistanceMatrix {
+
+    protected final int size;
+    protected final long length;
+
+    protected TriangularDistanceMatrix(int size) {
+        this.size = size;
+        this.length = (long) size * (size - 1) / 2;
+    }
+
+    /**
+     * Position of (i, j) in the condensed triangle, for i < j.
+     */
+    public long index(int i, int j) {
+        return (long) i * size - (long) i * (i + 1) / 2 + (j - i - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of distances stored
+     */
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0.0;
+        }
+        long index = i < j ? index(i, j) : index(j, i);
+        return get(index);
+    }
+
+    @Override
+    public double[] row(int i, double[] out) {
+        for (int j = 0; j < i; j++) {
+            out[j] = get(index(j, i));
+        }
+        out[i] = 0.0;
+        // The rest of the row is consecutive in the triangle
+        long index = index(i, i + 1);
+        for (int j = i + 1; j < size; j++) {
+            out[j] = get(index++);
+        }
+        return out;
+    }
+
+    public void set(int i, int j, double distance) {
+        if (i != j) {
+            set(i < j ? index(i, j) : index(j, i), distance);
+        }
+    }
+
+    /**
+     * @param index position in the condensed triangle
+     * @return the distance stored there
+     */
+    public abstract double get(long index);
+
+    /**
+     * @param index position in the condensed triangle
+     * @param distance
+     */
+    public abstract void set(long index, double distance);
+
+    /**
+     * @return true if the distances are stored as floats
+     */
+    public abstract boolean isSinglePrecision();
+}
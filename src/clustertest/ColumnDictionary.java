@@ -0,0 +1,64 @@
+package clustertest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Dictionary of the categorical values of one column. Values get the codes
+ * 0, 1, 2, ... in the order they are first seen, and codes map back to their
+ * values, so clusters or class labels can be reported with the original names.
+ */
+public class ColumnDictionary {
+
+    private final HashMap<String, Integer> codes;
+    private final ArrayList<String> values;
+
+    public ColumnDictionary() {
+        codes = new HashMap<>();
+        values = new ArrayList<>();
+    }
+
+    /**
+     * Get the code of a value, adding it if it is new.
+     * @param value
+     * @return the code of the value
+     */
+    public int code(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    /**
+     * @param value
+     * @return the code of the value, -1 if it has none
+     */
+    public int find(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @param code
+     * @return the value with the code
+     */
+    public String value(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * @return every value, indexed by code
+     */
+    public List<String> values() {
+        return values;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,800 @@
+package clustertest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Streaming tokenizer for comma and whitespace separated datasets. Numbers are
+ * parsed straight out of the byte buffer into a RowBuffer, without building a
+ * String per line or boxing a Double per value. A run of whitespace counts as
+ * one separator, exactly like DataTools.replaceSpaces followed by a split on
+ * commas (or on the delimiter of the dataset).
+ * 
+ * Column types are decided from a sample of the first rows: a column is
+ * categorical when most of its sampled non-empty values are not numbers, and
+ * all of its values are then encoded as 0, 1, 2, ... through a dictionary of
+ * its own, in the order they are first seen. In a numeric column numbers stay
+ * numbers, and only the stray values that are not, such as a "?" marking a
+ * missing value, are encoded through the column's dictionary. Numbers are
+ * recognized without throwing, so a categorical value costs one dictionary
+ * lookup.
+ * 
+ * Large files can be memory mapped and parsed in line aligned chunks on the
+ * fork-join pool with parseParallel. Each chunk keeps its own categorical
+ * dictionary, and the dictionaries are merged in file order so the result is
+ * the same as a sequential parse.
+ * 
+ * Column statistics for normalizing are gathered while the rows are added,
+ * so the dataset never needs a separate pass to find them. A parallel chunk
+ * holds back only its rows with categorical values, whose codes change when
+ * the dictionaries are merged, and adds them once they are remapped. Columns a
+ * DatasetDescriptor drops are skipped token by token and never stored.
+ */
+public class DataParser {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    // Rows read to decide which columns are categorical
+    private static final int SAMPLE_ROWS = 1000;
+    
+    // Bounds on the size of a chunk handed to one parallel task
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 1 << 28;
+
+    // Powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final RowBuffer rows;
+    private final Normalizer.Mode mode;
+    private final byte separator;
+    // Columns of the file to skip, resolved into keep once the width is known
+    private final int[] drop;
+    private boolean[] keep;
+    // Column of the file holding the class, and where it is once parsed
+    private Integer classColumn;
+    private int classIndex = -1;
+    private int sourceColumn;
+    private Normalizer stats;
+    // Categorical columns, decided from a sample before the first row
+    private boolean[] categoricalColumns;
+    private ColumnDictionary[] dictionaries;
+    // True while only sampling the width and column types of the file
+    private boolean sampling;
+    // Non-empty values and values that are not numbers seen per column while sampling
+    private int[] sampledValues;
+    private int[] sampledText;
+
+    private double[] tuple;
+    private int tupleSize;
+    
+    // Positions of categorical values, kept only while parsing one chunk
+    private final boolean trackCategorical;
+    private int[] rowCategorical;
+    private int rowCategoricalSize;
+    private int[] categoricalCells;
+    private int categoricalCellsSize;
+
+    public DataParser() {
+        this(Normalizer.Mode.MIN_MAX);
+    }
+    
+    /**
+     * @param mode normalization mode of the statistics gathered while parsing
+     */
+    public DataParser(Normalizer.Mode mode) {
+        this(new RowBuffer(), mode, false, (byte) ',', null);
+    }
+    
+    /**
+     * @param descriptor delimiter and dropped columns of the dataset
+     * @param mode normalization mode of the statistics gathered while parsing
+     */
+    public DataParser(DatasetDescriptor descriptor, Normalizer.Mode mode) {
+        this(new RowBuffer(), mode, false, (byte) descriptor.delimiter(), descriptor.drop());
+        classColumn = descriptor.classColumn();
+    }
+    
+    private DataParser(RowBuffer rows, Normalizer.Mode mode, boolean trackCategorical, byte separator, int[] drop) {
+        this.rows = rows;
+        this.mode = mode;
+        this.separator = separator;
+        this.drop = drop != null && drop.length > 0 ? drop : null;
+        this.trackCategorical = trackCategorical;
+        dictionaries = new ColumnDictionary[0];
+        tuple = new double[64];
+        rowCategorical = new int[16];
+        categoricalCells = new int[16];
+    }
+    
+    /**
+     * Memory map the file and parse it in line aligned chunks in parallel.
+     * @param path file to parse
+     * @param mode normalization mode of the statistics gathered while parsing
+     * @return a parser holding the same rows and categorical mapping a
+     *         sequential parse of the file would produce
+     * @throws IOException
+     */
+    public static DataParser parseParallel(Path path, Normalizer.Mode mode) throws IOException {
+        return parseParallel(path, new DatasetDescriptor(path.toString()), mode);
+    }
+    
+    /**
+     * Memory map the file and parse it in line aligned chunks in parallel.
+     * @param path file to parse
+     * @param descriptor delimiter and dropped columns of the dataset
+     * @param mode normalization mode of the statistics gathered while parsing
+     * @return a parser holding the same rows and categorical mapping a
+     *         sequential parse of the file would produce
+     * @throws IOException
+     */
+    public static DataParser parseParallel(Path path, DatasetDescriptor descriptor, Normalizer.Mode mode) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            DataParser prototype = new DataParser(descriptor, mode);
+            DataParser sampler = sample(channel, prototype.separator);
+            if (sampler.rows.rows() == 0) {
+                return prototype;
+            }
+            prototype.applySample(sampler);
+            int columns = prototype.categoricalColumns.length;
+            
+            long[] bounds = chunkBounds(channel, size);
+            DataParser[] chunks = new DataParser[bounds.length - 1];
+            try {
+                ForkJoinPool.commonPool().invoke(new ChunkTask(channel, bounds, chunks, prototype, 0, chunks.length));
+            } catch (java.io.UncheckedIOException e) {
+                throw e.getCause();
+            }
+            
+            // Merge the dictionaries of every column in file order, so values
+            // get the codes a sequential parse would have given them.
+            int totalRows = 0;
+            for (int i = 0; i < chunks.length; i++) {
+                totalRows += chunks[i].rows.rows();
+            }
+            DataParser merged = new DataParser(new RowBuffer(columns, totalRows), mode, false, prototype.separator, prototype.drop);
+            merged.classIndex = prototype.classIndex;
+            double[][][] codes = new double[chunks.length][columns][];
+            for (int i = 0; i < chunks.length; i++) {
+                ColumnDictionary[] local = chunks[i].dictionaries;
+                for (int column = 0; column < Math.min(columns, local.length); column++) {
+                    if (local[column] == null) {
+                        continue;
+                    }
+                    ColumnDictionary dictionary = merged.dictionary(column);
+                    codes[i][column] = new double[local[column].size()];
+                    for (int j = 0; j < local[column].size(); j++) {
+                        codes[i][column][j] = dictionary.code(local[column].value(j));
+                    }
+                }
+            }
+            
+            int[] firstRows = new int[chunks.length];
+            for (int i = 1; i < chunks.length; i++) {
+                firstRows[i] = firstRows[i - 1] + chunks[i - 1].rows.rows();
+            }
+            ForkJoinPool.commonPool().invoke(new MergeTask(chunks, codes, firstRows, merged.rows, 0, chunks.length));
+            
+            merged.stats = new Normalizer(mode, columns);
+            for (int i = 0; i < chunks.length; i++) {
+                merged.stats.merge(chunks[i].stats);
+            }
+            return merged;
+        }
+    }
+    
+    /**
+     * Sample the first rows of the file, reading more of it until a whole
+     * row has been seen.
+     */
+    private static DataParser sample(FileChannel channel, byte separator) throws IOException {
+        long size = channel.size();
+        long window = Math.min(size, MIN_CHUNK);
+        while (true) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, window);
+            // Only sample whole lines, a cut token could look like another type
+            int end = (int) window;
+            if (window < size) {
+                while (end > 0 && mapped.get(end - 1) != '\n') {
+                    end--;
+                }
+            }
+            DataParser sampler = sample(mapped, 0, end, separator);
+            if (sampler.rows.rows() > 0 || window == size) {
+                return sampler;
+            }
+            window = Math.min(size, Math.min(window * 2, Integer.MAX_VALUE));
+        }
+    }
+    
+    /**
+     * Sample up to SAMPLE_ROWS rows of buffer[from, to) for the width of the
+     * file and how many values of every column are not numbers.
+     * @return a parser holding the sampled rows, every value zero
+     */
+    private static DataParser sample(ByteBuffer buffer, int from, int to, byte separator) {
+        DataParser sampler = new DataParser(new RowBuffer(), Normalizer.Mode.MIN_MAX, false, separator, null);
+        sampler.sampling = true;
+        sampler.categoricalColumns = new boolean[0];
+        sampler.sampledValues = new int[16];
+        sampler.sampledText = new int[16];
+        sampler.parse(buffer, from, to);
+        return sampler;
+    }
+    
+    /**
+     * Take the columns to keep and the column types from a sample of the
+     * whole width of the file. The class column is categorical whatever its
+     * values look like.
+     */
+    private void applySample(DataParser sampler) {
+        int width = sampler.rows.columns();
+        keep = keepMask(drop, width);
+        int classSource = classColumn == null ? -1 : classColumn < 0 ? width + classColumn : classColumn;
+        boolean[] categorical = new boolean[width];
+        int columns = 0;
+        for (int i = 0; i < width; i++) {
+            if (keep[i]) {
+                if (i == classSource) {
+                    classIndex = columns;
+                }
+                categorical[columns++] = i == classSource || i < sampler.sampledValues.length
+                        && 2 * sampler.sampledText[i] > sampler.sampledValues[i];
+            }
+        }
+        categoricalColumns = java.util.Arrays.copyOf(categorical, columns);
+    }
+    
+    /**
+     * @param drop columns to skip, negative ones counted from the end
+     * @param width number of columns of the file
+     * @return for every column of the file, true if it is kept
+     */
+    private static boolean[] keepMask(int[] drop, int width) {
+        boolean[] keep = new boolean[width];
+        java.util.Arrays.fill(keep, true);
+        if (drop != null) {
+            for (int column : drop) {
+                int index = column < 0 ? width + column : column;
+                if (index >= 0 && index < width) {
+                    keep[index] = false;
+                }
+            }
+        }
+        return keep;
+    }
+    
+    /**
+     * Split the file at newlines into chunks of roughly equal size.
+     * @return offsets of the chunk boundaries, starting at 0 and ending at size
+     */
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        long chunk = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / (parallelism * 4L)));
+        
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = chunk;
+        while (position < size) {
+            // Move the boundary just past the next newline
+            long boundary = -1;
+            long scan = position;
+            while (boundary < 0 && scan < size) {
+                probe.clear();
+                int read = channel.read(probe, scan);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        boundary = scan + i + 1;
+                        break;
+                    }
+                }
+                scan += read;
+            }
+            if (boundary < 0 || boundary >= size) {
+                break;
+            }
+            bounds.add(boundary);
+            position = boundary + chunk;
+        }
+        bounds.add(size);
+        
+        long[] output = new long[bounds.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = bounds.get(i);
+        }
+        return output;
+    }
+    
+    private static class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final DataParser[] chunks;
+        // Separator, kept columns and column types shared by every chunk
+        private final DataParser prototype;
+        private final int from, to;
+        
+        ChunkTask(FileChannel channel, long[] bounds, DataParser[] chunks, DataParser prototype, int from, int to) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.chunks = chunks;
+            this.prototype = prototype;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, bounds, chunks, prototype, from, middle),
+                        new ChunkTask(channel, bounds, chunks, prototype, middle, to));
+                return;
+            }
+            try {
+                int length = (int) (bounds[from + 1] - bounds[from]);
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, bounds[from], length);
+                int columns = prototype.categoricalColumns.length;
+                DataParser chunk = new DataParser(new RowBuffer(columns, 0), Normalizer.Mode.MIN_MAX, true, prototype.separator, null);
+                chunk.keep = prototype.keep;
+                chunk.categoricalColumns = prototype.categoricalColumns;
+                chunk.parse(mapped, 0, length);
+                chunks[from] = chunk;
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }
+    }
+    
+    private static class MergeTask extends RecursiveAction {
+        private final DataParser[] chunks;
+        private final double[][][] codes;
+        private final int[] firstRows;
+        private final RowBuffer merged;
+        private final int from, to;
+        
+        MergeTask(DataParser[] chunks, double[][][] codes, int[] firstRows, RowBuffer merged, int from, int to) {
+            this.chunks = chunks;
+            this.codes = codes;
+            this.firstRows = firstRows;
+            this.merged = merged;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MergeTask(chunks, codes, firstRows, merged, from, middle),
+                        new MergeTask(chunks, codes, firstRows, merged, middle, to));
+                return;
+            }
+            DataParser chunk = chunks[from];
+            double[] values = chunk.rows.values();
+            int columns = chunk.rows.columns();
+            // Replace chunk-local category codes with the merged ones
+            for (int i = 0; i < chunk.categoricalCellsSize; i++) {
+                int cell = chunk.categoricalCells[i];
+                values[cell] = codes[from][cell % columns][(int) values[cell]];
+            }
+            merged.copyRows(chunk.rows, firstRows[from]);
+            
+            // The rows holding categorical values join the statistics now
+            // that their codes are final, the others joined while parsed
+            if (chunk.stats == null) {
+                chunk.stats = new Normalizer(Normalizer.Mode.MIN_MAX, columns);
+            }
+            int lastRow = -1;
+            for (int i = 0; i < chunk.categoricalCellsSize; i++) {
+                int row = chunk.categoricalCells[i] / columns;
+                if (row != lastRow) {
+                    chunk.stats.add(values, row * columns);
+                    lastRow = row;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse every line of the stream.
+     * @param in stream positioned at the start of the dataset
+     * @throws IOException
+     */
+    public void parse(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        int length = 0;
+        int read;
+
+        while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+
+            int lastLine = length - 1;
+            while (lastLine >= 0 && buffer[lastLine] != '\n') {
+                lastLine--;
+            }
+
+            if (lastLine >= 0) {
+                // Parse every complete line, keep the partial one for the next read
+                parse(wrapped, 0, lastLine + 1);
+                length -= lastLine + 1;
+                System.arraycopy(buffer, lastLine + 1, buffer, 0, length);
+            } else if (length == buffer.length) {
+                // A single line longer than the buffer
+                buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+                wrapped = ByteBuffer.wrap(buffer);
+            }
+        }
+
+        if (length > 0) {
+            parse(wrapped, 0, length);
+        }
+    }
+
+    /**
+     * Parse the lines held in buffer[from, to). The range must start at the
+     * beginning of a line; a last line without a newline is parsed as well.
+     * @param buffer
+     * @param from
+     * @param to
+     */
+    public void parse(ByteBuffer buffer, int from, int to) {
+        if (categoricalColumns == null) {
+            DataParser sampler = sample(buffer, from, to, separator);
+            if (sampler.rows.rows() > 0) {
+                applySample(sampler);
+            }
+        }
+        
+        int index = from;
+        while (index < to) {
+            if (sampling && rows.rows() >= SAMPLE_ROWS) {
+                return;
+            }
+            tupleSize = 0;
+            sourceColumn = 0;
+            int tokenStart = -1;
+
+            // Skip leading whitespace (String.trim)
+            while (index < to && isSpace(buffer.get(index))) {
+                index++;
+            }
+
+            while (index < to) {
+                byte b = buffer.get(index);
+                if (b == '\n') {
+                    break;
+                }
+                if (b != separator && !isSpace(b)) {
+                    if (tokenStart < 0) {
+                        tokenStart = index;
+                    }
+                    index++;
+                    continue;
+                }
+
+                int tokenEnd = index;
+                index++;
+                if (isSpace(b)) {
+                    while (index < to && isSpace(buffer.get(index))) {
+                        index++;
+                    }
+                    if (index >= to || buffer.get(index) == '\n') {
+                        // Trailing whitespace is trimmed, not a separator
+                        break;
+                    }
+                }
+                // An empty token between two separators is kept, as before
+                addValue(buffer, tokenStart < 0 ? tokenEnd : tokenStart, tokenEnd);
+                tokenStart = -1;
+            }
+
+            if (tokenStart >= 0) {
+                int tokenEnd = tokenStart;
+                while (tokenEnd < to && buffer.get(tokenEnd) != '\n'
+                        && buffer.get(tokenEnd) != separator && !isSpace(buffer.get(tokenEnd))) {
+                    tokenEnd++;
+                }
+                addValue(buffer, tokenStart, tokenEnd);
+            }
+
+            if (tupleSize > 0) {
+                rows.addRow(tuple, tupleSize);
+                // A chunk's rows with categorical values wait for their final codes
+                boolean pending = trackCategorical && trackRow();
+                if (!sampling && !pending) {
+                    if (stats == null) {
+                        stats = new Normalizer(mode, rows.columns());
+                    }
+                    stats.add(rows.values(), (rows.rows() - 1) * rows.columns());
+                }
+            }
+            rowCategoricalSize = 0;
+
+            // Move past the newline
+            while (index < to && buffer.get(index) != '\n') {
+                index++;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Remember where the categorical values of the row just added ended up.
+     * @return true if the row holds any
+     */
+    private boolean trackRow() {
+        int columns = rows.columns();
+        int rowStart = (rows.rows() - 1) * columns;
+        int before = categoricalCellsSize;
+        for (int i = 0; i < rowCategoricalSize; i++) {
+            if (rowCategorical[i] < columns) {
+                if (categoricalCellsSize == categoricalCells.length) {
+                    categoricalCells = java.util.Arrays.copyOf(categoricalCells, categoricalCellsSize * 2);
+                }
+                categoricalCells[categoricalCellsSize++] = rowStart + rowCategorical[i];
+            }
+        }
+        return categoricalCellsSize > before;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    private void addValue(ByteBuffer buffer, int start, int end) {
+        int column = sourceColumn++;
+        if (keep != null && column < keep.length && !keep[column]) {
+            return;
+        }
+        if (tupleSize == tuple.length) {
+            tuple = java.util.Arrays.copyOf(tuple, tuple.length * 2);
+        }
+        double value = parseValue(buffer, start, end);
+        tuple[tupleSize++] = value;
+    }
+
+    /**
+     * Parse a token as a number, or encode it through the dictionary of its
+     * column if the column is categorical or the token is not a number.
+     */
+    private double parseValue(ByteBuffer buffer, int start, int end) {
+        int column = tupleSize;
+        if (sampling) {
+            if (end > start) {
+                if (column >= sampledValues.length) {
+                    int length = Math.max(column + 1, sampledValues.length * 2);
+                    sampledValues = java.util.Arrays.copyOf(sampledValues, length);
+                    sampledText = java.util.Arrays.copyOf(sampledText, length);
+                }
+                sampledValues[column]++;
+                if (!isNumber(buffer, start, end)) {
+                    sampledText[column]++;
+                }
+            }
+            return 0.0;
+        }
+        
+        if (categoricalColumns == null || column >= categoricalColumns.length || !categoricalColumns[column]) {
+            double value = parseNumber(buffer, start, end);
+            if (!Double.isNaN(value)) {
+                return value;
+            }
+            if (isNumber(buffer, start, end)) {
+                return Double.parseDouble(token(buffer, start, end));
+            }
+        }
+        
+        if (trackCategorical) {
+            if (rowCategoricalSize == rowCategorical.length) {
+                rowCategorical = java.util.Arrays.copyOf(rowCategorical, rowCategoricalSize * 2);
+            }
+            rowCategorical[rowCategoricalSize++] = column;
+        }
+        return dictionary(column).code(token(buffer, start, end));
+    }
+    
+    /**
+     * Get the dictionary of a column, creating it if it has none.
+     */
+    private ColumnDictionary dictionary(int column) {
+        if (column >= dictionaries.length) {
+            dictionaries = java.util.Arrays.copyOf(dictionaries, Math.max(column + 1, dictionaries.length * 2));
+        }
+        if (dictionaries[column] == null) {
+            dictionaries[column] = new ColumnDictionary();
+        }
+        return dictionaries[column];
+    }
+
+    static String token(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Check, without throwing, whether Double.parseDouble accepts a token:
+     * [sign]digits[.digits][e[sign]digits][type suffix], NaN or Infinity.
+     * Hexadecimal numbers are not recognized.
+     */
+    static boolean isNumber(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            i++;
+        }
+        if (matches(buffer, i, end, "NaN") || matches(buffer, i, end, "Infinity")) {
+            return true;
+        }
+        
+        int digits = 0;
+        while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+            digits++;
+            i++;
+        }
+        if (i < end && buffer.get(i) == '.') {
+            i++;
+            while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+                digits++;
+                i++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            i++;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+                exponentDigits++;
+                i++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        if (i < end) {
+            byte suffix = buffer.get(i);
+            if (suffix == 'f' || suffix == 'F' || suffix == 'd' || suffix == 'D') {
+                i++;
+            }
+        }
+        return i == end;
+    }
+    
+    private static boolean matches(ByteBuffer buffer, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (buffer.get(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a plain decimal number ([sign]digits[.digits][e[sign]digits]) when
+     * it can be converted exactly with a single multiplication or division.
+     * @return the value, or NaN if the token needs Double.parseDouble
+     */
+    static double parseNumber(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean digits = false;
+
+        while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+            digits = true;
+            if (mantissa != 0 || buffer.get(i) != '0') {
+                mantissa = mantissa * 10 + (buffer.get(i) - '0');
+                significant++;
+            }
+            i++;
+        }
+        if (i < end && buffer.get(i) == '.') {
+            i++;
+            while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+                digits = true;
+                if (mantissa != 0 || buffer.get(i) != '0') {
+                    mantissa = mantissa * 10 + (buffer.get(i) - '0');
+                    significant++;
+                }
+                exponent--;
+                i++;
+            }
+        }
+        if (!digits || significant > 15) {
+            return Double.NaN;
+        }
+        if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativeExponent = buffer.get(i) == '-';
+                i++;
+            }
+            int explicit = 0;
+            boolean exponentDigits = false;
+            while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9' && explicit < 1000) {
+                explicit = explicit * 10 + (buffer.get(i) - '0');
+                exponentDigits = true;
+                i++;
+            }
+            if (!exponentDigits) {
+                return Double.NaN;
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.NaN;
+        }
+        return negative ? -value : value;
+    }
+
+    public RowBuffer rows() {
+        return rows;
+    }
+
+    /**
+     * @return the dictionary of every column, null for columns that never
+     *         held a categorical value
+     */
+    public ColumnDictionary[] dictionaries() {
+        return java.util.Arrays.copyOf(dictionaries, rows.columns());
+    }
+
+    /**
+     * @return column of the parsed rows holding the class codes, -1 if the
+     *         dataset has no class column or drops it
+     */
+    public int classColumn() {
+        return classIndex;
+    }
+
+    /**
+     * @return statistics of every column parsed, null if there are no rows
+     */
+    public Normalizer stats() {
+        return stats;
+    }
+}
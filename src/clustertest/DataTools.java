@@ -4,11 +4,21 @@ package clustertest;
  *
  * @author David
  */
-import java.io.IOException;
+import clustering.CondensedDistanceMatrix;
+import clustering.Dataset;
+import clustering.DistanceMatrix;
+import clustering.DistanceMetric;
+import clustering.DistanceStorage;
+import clustering.LazyDistanceMatrix;
+import clustering.MappedDistanceMatrix;
+import clustering.TriangularDistanceMatrix;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,6 +26,11 @@ public class DataTools {
     
     private static final java.util.Random rand = new java.util.Random();
     
+    // Files at least this large are parsed in parallel by default
+    private static final long PARALLEL_THRESHOLD = 64L << 20;
+    
+    private static final Pattern SPACES = Pattern.compile("(\\s+)");
+    
     /**
      * Set the specified column as the class attribute, making it the last column.
      * @param dataset
@@ -47,36 +62,75 @@ public class DataTools {
     /**
      * Randomly shuffle all tuples in the dataset
      * @param dataset
-     * @param indices
-     * @return dataset with tuples rearranged;
+     * @return a copy of the dataset with tuples rearranged
      */
     public static double[][] shuffleData(double[][] dataset) {
-        ArrayList<Double[]> shuffleData = new ArrayList<>();
-        
-        int tupleSize = dataset[0].length;
-        int tupleCount = dataset.length;
-        
-        for (int i = 0; i < tupleCount; i++) {
-            Double[] tuple = new Double[tupleSize];
-            for (int j = 0; j < tupleSize; j++) {
-                tuple[j] = dataset[i][j];
+        int[] order = shuffledIndices(dataset.length);
+        double[][] newDataset = new double[dataset.length][];
+        for (int i = 0; i < order.length; i++) {
+            newDataset[i] = dataset[order[i]].clone();
+        }
+        return newDataset;
+    }
+    
+    /**
+     * Randomly shuffle all tuples in the dataset, without copying them.
+     * @param dataset
+     * @return a view of the dataset with tuples rearranged
+     */
+    public static Dataset shuffleData(Dataset dataset) {
+        return dataset.permute(shuffledIndices(dataset.rows()));
+    }
+    
+    /**
+     * Fisher-Yates shuffle of the indices 0 to size - 1.
+     * @param size
+     * @return the indices in random order
+     */
+    public static int[] shuffledIndices(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int swap = indices[i];
+            indices[i] = indices[j];
+            indices[j] = swap;
+        }
+        return indices;
+    }
+
+    /**
+     * Remove the specified column
+     * @param dataset
+     * @param columnIndex
+     * @return a new dataset without the specified column
+     */
+    public static Dataset removeColumn(Dataset dataset, int columnIndex) {
+        int rows = dataset.rows();
+        int columns = dataset.columns() - 1;
+        if (dataset.isSinglePrecision()) {
+            float[] source = dataset.floatValues();
+            float[] values = new float[rows * columns];
+            for (int i = 0; i < rows; i++) {
+                int offset = dataset.offset(i);
+                System.arraycopy(source, offset, values, i * columns, columnIndex);
+                System.arraycopy(source, offset + columnIndex + 1, values, i * columns + columnIndex, columns - columnIndex);
             }
-            shuffleData.add(tuple);
+            return new Dataset(values, rows, columns);
         }
         
-        double[][] newDataset = new double[tupleCount][tupleSize];
-        int size = tupleCount;
-        for (int i = 0; i < tupleCount; i++) {
-            int index = rand.nextInt(size);
-            Double[] tuple = shuffleData.remove(index);
-            size--;
-            
-            for (int j = 0; j < tupleSize; j++) {
-                newDataset[i][j] = tuple[j];
-            }
+        double[] source = dataset.values();
+        double[] values = new double[rows * columns];
+        
+        for (int i = 0; i < rows; i++) {
+            int offset = dataset.offset(i);
+            System.arraycopy(source, offset, values, i * columns, columnIndex);
+            System.arraycopy(source, offset + columnIndex + 1, values, i * columns + columnIndex, columns - columnIndex);
         }
         
-        return newDataset;
+        return new Dataset(values, rows, columns);
     }
 
     /**
@@ -110,168 +164,221 @@ public class DataTools {
     }
     
     public static double[][] normalizeData(double[][] dataset) {
-        double[] min = new double[dataset[0].length];
-        double[] max = new double[dataset[0].length];
-        // Initialize the minimum and maximum values
-        for (int i = 0; i < max.length; i++) {
-            max[i] = Double.MIN_VALUE;
-            min[i] = Double.MAX_VALUE;
-        }
-        // Find the min and max of each attribute in the dataset
-        for (int i = 0; i < dataset.length; i++) {
-            for (int j = 0; j < dataset[i].length; j++) {
-                if (max[j] < dataset[i][j]) {
-                    max[j] = dataset[i][j];
-                }
-                if (min[j] > dataset[i][j]) {
-                    min[j] = dataset[i][j];
-                }
-            }
+        return normalizeData(dataset, new double[dataset[0].length], new double[dataset[0].length]);
+    }
+    
+    /**
+     * Min-max normalize every column of the dataset in place. A constant
+     * column normalizes to 0.
+     * @param dataset
+     * @param min filled with the minimum of every column
+     * @param max filled with the maximum of every column
+     * @return the normalized dataset
+     */
+    public static double[][] normalizeData(double[][] dataset, double[] min, double[] max) {
+        Normalizer stats = new Normalizer(Normalizer.Mode.MIN_MAX, min.length);
+        for (double[] row : dataset) {
+            stats.add(row);
         }
-        
-        // Normalize the data relative to its min and max
-        for (int i = 0; i < dataset.length; i++) {
-            for (int j = 0; j < dataset[i].length; j++) {
-                dataset[i][j] = (dataset[i][j]-min[j])/(max[j]-min[j]);
-            }
+        for (double[] row : dataset) {
+            stats.transform(row);
         }
+        System.arraycopy(stats.min(), 0, min, 0, min.length);
+        System.arraycopy(stats.max(), 0, max, 0, max.length);
         return dataset;
     }
     
     /**
-     * Get a dataset from a CSV.
+     * Min-max normalize every column of the dataset in place. A constant
+     * column normalizes to 0.
+     * @param dataset
+     * @param min filled with the minimum of every column
+     * @param max filled with the maximum of every column
+     * @return the normalized dataset
+     */
+    public static Dataset normalizeData(Dataset dataset, double[] min, double[] max) {
+        Normalizer stats = new Normalizer(Normalizer.Mode.MIN_MAX, dataset.columns());
+        stats.add(dataset);
+        stats.transform(dataset);
+        System.arraycopy(stats.min(), 0, min, 0, min.length);
+        System.arraycopy(stats.max(), 0, max, 0, max.length);
+        return dataset;
+    }
+    
+    /**
+     * Get a dataset from a CSV. Files of at least PARALLEL_THRESHOLD bytes are
+     * parsed in parallel.
      * @param file_name
      * @return 2D array data[i][j]
      */
     public static double[][] getDataFromFile(String file_name) {
-        // Relative path. Must create a directory "~/data/"  
+        Dataset dataset = loadDataset(file_name);
+        return dataset == null ? null : dataset.toArray();
+    }
+    
+    /**
+     * Get a dataset from a CSV.
+     * @param file_name
+     * @param parallel true to memory map the file and parse it in chunks on
+     *                 every core, false to stream it on this thread
+     * @return 2D array data[i][j]
+     */
+    public static double[][] getDataFromFile(String file_name, boolean parallel) {
+        Dataset dataset = loadDataset(file_name, parallel);
+        return dataset == null ? null : dataset.toArray();
+    }
+    
+    /**
+     * Load a dataset from a CSV into contiguous memory. Files of at least
+     * PARALLEL_THRESHOLD bytes are parsed in parallel.
+     * @param file_name
+     * @return the normalized dataset
+     */
+    public static Dataset loadDataset(String file_name) {
         File file = new File(file_name);
-        ArrayList<ArrayList<Double>> relation = new ArrayList();
-
-        HashMap<String, Double> replace = new HashMap();
-        
-        double newValue = 1.0;
-        
-        boolean csv = file_name.contains("csv");
-        
+        return loadDataset(file_name, file.length() >= PARALLEL_THRESHOLD);
+    }
+    
+    /**
+     * Load a dataset from a CSV into contiguous memory. The normalized dataset
+     * is cached in a binary file next to the CSV, and later calls read the
+     * cache until the CSV changes.
+     * @param file_name
+     * @param parallel true to memory map the file and parse it in chunks on
+     *                 every core, false to stream it on this thread
+     * @return the min-max normalized dataset
+     */
+    public static Dataset loadDataset(String file_name, boolean parallel) {
+        return loadDataset(file_name, parallel, Normalizer.Mode.MIN_MAX);
+    }
+    
+    /**
+     * Load a dataset from a CSV into contiguous memory, normalized with
+     * statistics gathered while the file is parsed.
+     * @param file_name
+     * @param parallel true to memory map the file and parse it in chunks on
+     *                 every core, false to stream it on this thread
+     * @param mode MIN_MAX to scale every column to [0, 1], Z_SCORE to zero
+     *             mean and unit variance
+     * @return the normalized dataset
+     */
+    public static Dataset loadDataset(String file_name, boolean parallel, Normalizer.Mode mode) {
+        DatasetCache cache = load(file_name, parallel, mode);
+        return cache == null ? null : cache.data();
+    }
+    
+    /**
+     * Statistics a dataset is normalized with by loadDataset, so new points
+     * can be normalized the same way. Loads the dataset if it is not cached.
+     * @param file_name
+     * @param mode
+     * @return the statistics, or null if the dataset cannot be loaded
+     */
+    public static Normalizer loadStatistics(String file_name, Normalizer.Mode mode) {
+        DatasetCache cache = load(file_name, new File(file_name).length() >= PARALLEL_THRESHOLD, mode);
+        return cache == null ? null : cache.stats();
+    }
+    
+    /**
+     * Dictionaries of the categorical columns of a dataset loaded by
+     * loadDataset, to map codes back to the values in the file. Loads the
+     * dataset if it is not cached.
+     * @param file_name
+     * @param mode
+     * @return dictionary of every column, null for columns without one, or
+     *         null if the dataset cannot be loaded
+     */
+    public static ColumnDictionary[] loadDictionaries(String file_name, Normalizer.Mode mode) {
+        DatasetCache cache = load(file_name, new File(file_name).length() >= PARALLEL_THRESHOLD, mode);
+        return cache == null ? null : cache.dictionaries();
+    }
+    
+    /**
+     * Class of every row of a dataset loaded by loadDataset, from the class
+     * column of its registry entry. Loads the dataset if it is not cached.
+     * @param file_name
+     * @param mode
+     * @return class code of every row, 0, 1, 2, ... in the order the classes
+     *         are first seen, or null if the dataset has no class column or
+     *         cannot be loaded
+     */
+    public static int[] loadClasses(String file_name, Normalizer.Mode mode) {
+        DatasetCache cache = load(file_name, new File(file_name).length() >= PARALLEL_THRESHOLD, mode);
+        return cache == null ? null : cache.classes();
+    }
+    
+    /**
+     * Names of the classes loadClasses codes, indexed by code.
+     * @param file_name
+     * @param mode
+     * @return the dictionary of the class column, or null if the dataset has
+     *         no class column or cannot be loaded
+     */
+    public static ColumnDictionary loadClassNames(String file_name, Normalizer.Mode mode) {
+        DatasetCache cache = load(file_name, new File(file_name).length() >= PARALLEL_THRESHOLD, mode);
+        return cache == null || cache.classColumn() < 0 ? null : cache.dictionaries()[cache.classColumn()];
+    }
+    
+    /**
+     * Open a CSV as a stream of normalized batches, without loading it. The
+     * statistics are gathered by reading the file once; the cache is not used,
+     * since reading it would load the whole dataset.
+     * @param file_name
+     * @param mode
+     * @return the stream, or null if the dataset cannot be read
+     */
+    public static FileRowStream streamDataset(String file_name, Normalizer.Mode mode) {
+        DatasetDescriptor descriptor = DatasetRegistry.getInstance().get(file_name);
         try {
-            
-            Scanner scan = new Scanner(new File(file_name));
-            
-            String comma = ",";
-            
-            while(scan.hasNext()) {
-                ArrayList<Double> tuple = new ArrayList();
-                
-                String line = scan.nextLine();
-                line = line.trim();
-                
-                line = replaceSpaces(line);
-                
-                while (line.contains(comma)) {
-                    
-                    int index = line.indexOf(comma);
-                    String value = line.substring(0,index);
-                    
-                    double parseValue = 0.0;
-                    
-                    try {
-                        parseValue += Double.parseDouble(value);
-                    } catch(NumberFormatException x) {
-                        if (replace.containsKey(value)) {
-                            parseValue = replace.get(value);
-                        } else {
-                            replace.put(value, newValue);
-                            parseValue = newValue;
-                            newValue += 1.0;
-                        }
-                    }
-                    
-                    tuple.add(parseValue);
-                    
-                    line = line.substring(index + 1);
-                }
-                
-                if (line.length() > 0) {
-                    double parseValue = 0.0;
-                    
-                    try {
-                        parseValue += Double.parseDouble(line);
-                    } catch(NumberFormatException x) {
-                        if (replace.containsKey(line)) {
-                            parseValue = replace.get(line);
-                        } else {
-                            replace.put(line, newValue);
-                            parseValue = newValue;
-                            newValue += 1.0;
-                        }
-                    }
-                    
-                    tuple.add(parseValue);
-                }
-                
-                relation.add(tuple);
+            FileRowStream stream = new FileRowStream(file_name, descriptor, mode);
+            if (stream.stats() == null) {
+                System.out.println("Dataset is empty.");
+                stream.close();
+                return null;
             }
+            return stream;
         } catch (IOException e) {
             System.out.println("Dataset does not exist.");
             return null;
         }
-
-        double[][] data = new double[relation.size()][relation.get(0).size()];
+    }
+    
+    private static DatasetCache load(String file_name, boolean parallel, Normalizer.Mode mode) {
+        // Relative path. Must create a directory "~/data/"  
+        DatasetDescriptor descriptor = DatasetRegistry.getInstance().get(file_name);
+        DatasetCache cache = DatasetCache.read(file_name, descriptor, mode);
+        if (cache != null) {
+            return cache;
+        }
+        
+        // Columns the descriptor drops are skipped by the parser
+        DataParser parser = new DataParser(descriptor, mode);
         
-        for (int i = 0; i < relation.size(); i++) {
-            ArrayList<Double> tuple = relation.get(i);
-            for (int j = 0; j < tuple.size(); j++) {
-                data[i][j] = tuple.get(j);
+        try {
+            if (parallel) {
+                parser = DataParser.parseParallel(new File(file_name).toPath(), descriptor, mode);
+            } else {
+                try (InputStream in = new FileInputStream(file_name)) {
+                    parser.parse(in);
+                }
             }
+        } catch (IOException e) {
+            System.out.println("Dataset does not exist.");
+            return null;
         }
         
-        switch(file_name) {
-            case "data/bupa.csv":
-                // Remove selector attribute
-                data = removeColumn(data, data[0].length - 1);
-                break;
-            case "data/wholesale.csv":
-                // Remove flags for region
-//                data = removeColumn(data, 0);
-                // Remove flags for channel
-//                data = removeColumn(data, 0);
-                break;
-            case "data/gesture.csv":
-                // Remove timestamp
-                data = removeColumn(data, data[0].length - 2);
-                break;
-            case "data/dow_jones.data":
-                // Remove fiscal quarter
-                data = removeColumn(data, 0);
-                // Remove timestamp
-                data = removeColumn(data, 1);
-                break;
-            case "data/SPECTF.csv":
-                // Remove only binary attribute (class attribute)
-//                data = removeColumn(data, 0);
-                break;
-            case "data/turkiye-student-evaluation_generic.csv":
-                // Keep everything, values of class attribute(s) are similar to
-                // the values of other attributes.
-                break;
-            case "data/synthetic_control.data":
-                // Keep everything.
-                break;
-            case "data/seeds.data":
-                // Keep everything.
-                break;
-            case "data/airfoil.data":
-                // Keep everything.
-                break;
-            case "data/movement_libras.csv":
-                // Keep everything.
-                break;
+        if (parser.rows().rows() == 0) {
+            System.out.println("Dataset is empty.");
+            return null;
         }
+
+        Dataset data = parser.rows().toDataset();
+        Normalizer stats = parser.stats();
+        data = stats.transform(data);
+        ColumnDictionary[] dictionaries = parser.dictionaries();
+        DatasetCache.write(file_name, descriptor, data, stats, dictionaries, parser.classColumn());
         
-        data = normalizeData(data);
-        
-        return data;
+        return new DatasetCache(data, stats, dictionaries, parser.classColumn());
     }
     
     /**
@@ -338,17 +445,22 @@ public class DataTools {
         return new double[][][] { trainingData, testingData };
     }
     
+    /**
+     * Relabel the class attribute (last column) as 0, 1, 2, ... in the order
+     * the classes are first seen.
+     * @param dataset
+     * @return the relabeled dataset
+     */
     public static double[][] incrementalClasses(double[][] dataset) {
-        ArrayList<Double> values = new ArrayList<>();
-        double counter = 0.0;
+        HashMap<Double, Integer> classes = new HashMap<>();
         for (int i = 0; i < dataset.length; i++) {
             int index = dataset[i].length - 1;
-            if (!values.contains(dataset[i][index])) {
-                values.add(dataset[i][index]);
-                dataset[i][index] = (double) values.indexOf(dataset[i][index]);
-            } else {
-                dataset[i][index] = (double) values.indexOf(dataset[i][index]);
+            Integer label = classes.get(dataset[i][index]);
+            if (label == null) {
+                label = classes.size();
+                classes.put(dataset[i][index], label);
             }
+            dataset[i][index] = label;
         }
         
         return dataset;
@@ -361,18 +473,180 @@ public class DataTools {
         }
     }
     
-    public static double[][] distancesTo(double[][] dataset) {
-        int length = dataset.length;
-        double[][] distances = new double[length][length];
-        for (int i = 0; i < length; i++) {
-            for (int j = i + 1; j < length; j++) {
-                distances[i][j] = distance(dataset[i], dataset[j]);
-                distances[j][i] = distances[i][j];
+    public static DistanceMatrix distancesTo(double[][] dataset) {
+        return distancesTo(new Dataset(dataset));
+    }
+    
+    /**
+     * Distances between every pair of rows, stored in the precision of the
+     * dataset.
+     * @param dataset
+     * @return the distances
+     */
+    public static DistanceMatrix distancesTo(Dataset dataset) {
+        return distancesTo(dataset, dataset.isSinglePrecision());
+    }
+    
+    /**
+     * Find the distance between every pair of rows, on the heap, or in a
+     * memory-mapped temporary file if the matrix would take more than half of
+     * the maximum heap.
+     * @param dataset
+     * @param singlePrecision true to store the distances as floats
+     * @return the distance matrix
+     */
+    public static DistanceMatrix distancesTo(Dataset dataset, boolean singlePrecision) {
+        return distancesTo(dataset, singlePrecision, DistanceMetric.EUCLIDEAN);
+    }
+    
+    /**
+     * Find the distance between every pair of rows with any metric, stored
+     * as distancesTo(dataset, singlePrecision) stores Euclidean ones.
+     * @param dataset
+     * @param singlePrecision true to store the distances as floats
+     * @param metric distance between two rows
+     * @return the distance matrix
+     */
+    public static DistanceMatrix distancesTo(Dataset dataset, boolean singlePrecision, DistanceMetric metric) {
+        long entries = (long) dataset.rows() * (dataset.rows() - 1) / 2;
+        long bytes = entries * (singlePrecision ? 4 : 8);
+        DistanceStorage storage = bytes > Runtime.getRuntime().maxMemory() / 2
+                ? DistanceStorage.MAPPED : DistanceStorage.HEAP;
+        return distancesTo(dataset, singlePrecision, storage, metric);
+    }
+    
+    /**
+     * Find the distance between every pair of rows. Only the upper triangle is
+     * stored, since the matrix is symmetric with a zero diagonal. The triangle
+     * is split into tiles of block x block rows, small enough for both blocks
+     * to stay in cache, and the tiles are computed in parallel. LAZY storage
+     * computes nothing up front, rows are computed as they are read.
+     * @param dataset
+     * @param singlePrecision true to store the distances as floats, ignored
+     *                        by LAZY storage
+     * @param storage where to keep the distances
+     * @return the distance matrix
+     */
+    public static DistanceMatrix distancesTo(Dataset dataset, boolean singlePrecision, DistanceStorage storage) {
+        return distancesTo(dataset, singlePrecision, storage, DistanceMetric.EUCLIDEAN);
+    }
+    
+    /**
+     * Find the distance between every pair of rows with any metric, stored as
+     * distancesTo(dataset, singlePrecision, storage) stores Euclidean ones.
+     * @param dataset
+     * @param singlePrecision true to store the distances as floats, ignored
+     *                        by LAZY storage
+     * @param storage where to keep the distances
+     * @param metric distance between two rows
+     * @return the distance matrix
+     */
+    public static DistanceMatrix distancesTo(Dataset dataset, boolean singlePrecision, DistanceStorage storage,
+            DistanceMetric metric) {
+        int length = dataset.rows();
+        if (storage == DistanceStorage.LAZY) {
+            // Let the cached rows take up to an eighth of the heap
+            long rowBytes = 8L * Math.max(1, length);
+            long cachedRows = Runtime.getRuntime().maxMemory() / 8 / rowBytes;
+            return new LazyDistanceMatrix(dataset, (int) Math.max(16, Math.min(length, cachedRows)), metric);
+        }
+        
+        TriangularDistanceMatrix distances;
+        if (storage == DistanceStorage.HEAP) {
+            distances = new CondensedDistanceMatrix(length, singlePrecision);
+        } else {
+            distances = new MappedDistanceMatrix(length, singlePrecision, storage);
+        }
+        
+        // Two blocks of rows should fit in about 64 KB
+        int block = Math.max(16, Math.min(1024, 4096 / Math.max(1, dataset.columns())));
+        int blocks = (length + block - 1) / block;
+        int[] tileRows = new int[blocks * (blocks + 1) / 2];
+        int[] tileColumns = new int[tileRows.length];
+        int tile = 0;
+        for (int i = 0; i < blocks; i++) {
+            for (int j = i; j < blocks; j++) {
+                tileRows[tile] = i;
+                tileColumns[tile] = j;
+                tile++;
             }
         }
+        
+        ForkJoinPool.commonPool().invoke(new DistanceTiles(dataset, metric.forDataset(dataset), distances,
+                block, tileRows, tileColumns, 0, tile));
         return distances;
     }
     
+    /**
+     * Computes the tiles [from, to) of the upper triangle, splitting the range
+     * in half until it is small enough to run on one thread.
+     */
+    private static class DistanceTiles extends RecursiveAction {
+        // Roughly the number of distances worth handing to one thread
+        private static final long SEQUENTIAL_WORK = 1 << 16;
+        
+        private final Dataset dataset;
+        private final DistanceMetric metric;
+        private final TriangularDistanceMatrix distances;
+        private final int block;
+        private final int[] tileRows, tileColumns;
+        private final int from, to;
+        
+        DistanceTiles(Dataset dataset, DistanceMetric metric, TriangularDistanceMatrix distances, int block,
+                int[] tileRows, int[] tileColumns, int from, int to) {
+            this.dataset = dataset;
+            this.metric = metric;
+            this.distances = distances;
+            this.block = block;
+            this.tileRows = tileRows;
+            this.tileColumns = tileColumns;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > 1 && (long) (to - from) * block * block > SEQUENTIAL_WORK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DistanceTiles(dataset, metric, distances, block, tileRows, tileColumns, from, middle),
+                        new DistanceTiles(dataset, metric, distances, block, tileRows, tileColumns, middle, to));
+                return;
+            }
+            
+            int length = dataset.rows();
+            for (int tile = from; tile < to; tile++) {
+                int rowStart = tileRows[tile] * block;
+                int rowEnd = Math.min(length, rowStart + block);
+                int columnStart = tileColumns[tile] * block;
+                int columnEnd = Math.min(length, columnStart + block);
+                
+                for (int i = rowStart; i < rowEnd; i++) {
+                    int j = Math.max(columnStart, i + 1);
+                    if (j >= columnEnd) {
+                        continue;
+                    }
+                    // Distances from row i to consecutive rows are consecutive
+                    long index = distances.index(i, j);
+                    for (; j < columnEnd; j++) {
+                        distances.set(index++, metric.distance(dataset, i, j));
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Find the Euclidean distance between rows a and b of the dataset.
+     * 
+     * @param dataset
+     * @param a
+     * @param b
+     * @return 
+     */
+    public static double distance(Dataset dataset, int a, int b) {
+        return DistanceMetric.EUCLIDEAN.distance(dataset, a, b);
+    }
+    
     /**
      * Find the Euclidean distance between a and b.
      * 
@@ -381,18 +655,12 @@ public class DataTools {
      * @return 
      */
     public static double distance(double[] a, double[] b) {
-        double distance = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            double difference = a[i] - b[i];
-            distance += difference * difference;
-        }
-        return Math.sqrt(distance);
+        return DistanceMetric.EUCLIDEAN.distance(a, b);
     }
     
     public static String replaceSpaces(String line) {
-        Pattern find = Pattern.compile("(\\s+)");
         String replace = ",";
-        Matcher matcher = find.matcher(line);
+        Matcher matcher = SPACES.matcher(line);
         return matcher.replaceAll(replace);
     }
     
@@ -0,0 +1,369 @@
+package clustertest;
+
+import clustering.Dataset;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of a parsed and normalized dataset, stored next to the source
+ * file as "name.cache". The layout is little-endian throughout:
+ *
+ *   int magic, int version, int rows, int columns,
+ *   long source length, long source last modified, long source CRC32,
+ *   long rows seen by the statistics, int normalization mode,
+ *   int layout hash of the dataset descriptor, int class column or -1,
+ *   double[columns] min, max, mean and sum of squared deviations,
+ *   double[rows * columns] values, row-major,
+ *   per column: int dictionary size, then per value int length, UTF-8 bytes
+ *
+ * A cache is used when the source length and modification time still match,
+ * or when they differ but the source hash is the same, in which case the new
+ * modification time is stored.
+ */
+public class DatasetCache {
+
+    private static final int MAGIC = 0x53444D43;
+    // Bump whenever the parsed or normalized values of a file would change
+    private static final int VERSION = 6;
+    private static final int HEADER_SIZE = 60;
+    // The cache is read and written through a buffer of this many bytes, so
+    // its size is not bound by what one mapping can hold
+    private static final int BUFFER_SIZE = 1 << 20;
+    // Most values one array holds
+    private static final long MAX_VALUES = Integer.MAX_VALUE - 8;
+
+    private final Dataset data;
+    private final Normalizer stats;
+    private final ColumnDictionary[] dictionaries;
+    private final int classColumn;
+
+    DatasetCache(Dataset data, Normalizer stats, ColumnDictionary[] dictionaries, int classColumn) {
+        this.data = data;
+        this.stats = stats;
+        this.dictionaries = dictionaries;
+        this.classColumn = classColumn;
+    }
+
+    public static File cacheFile(String file_name) {
+        return new File(file_name + ".cache");
+    }
+
+    /**
+     * Read the cache of a source file.
+     * @param file_name source file of the dataset
+     * @param descriptor how the cached values must have been parsed
+     * @param mode normalization the cached values must have
+     * @return the cached dataset, or null if there is no valid cache
+     */
+    public static DatasetCache read(String file_name, DatasetDescriptor descriptor, Normalizer.Mode mode) {
+        File source = new File(file_name);
+        File cache = cacheFile(file_name);
+        if (!source.isFile() || !cache.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            require(channel, buffer, HEADER_SIZE);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            long length = buffer.getLong();
+            long modified = buffer.getLong();
+            long hash = buffer.getLong();
+
+            long count = buffer.getLong();
+            int modeIndex = buffer.getInt();
+            int layout = buffer.getInt();
+            int classColumn = buffer.getInt();
+
+            long values = (long) rows * columns;
+            long expectedSize = HEADER_SIZE + 32L * columns + 8L * values;
+            if (rows < 0 || columns < 0 || values > MAX_VALUES || channel.size() < expectedSize
+                    || classColumn < -1 || classColumn >= columns
+                    || modeIndex != mode.ordinal() || layout != descriptor.layoutHash()) {
+                return null;
+            }
+            if (length != source.length() || modified != source.lastModified()) {
+                if (length != source.length() || hash != hash(source)) {
+                    return null;
+                }
+                // Same contents, remember the new time so later loads skip the hash
+                updateModified(cache, source.lastModified());
+            }
+
+            double[] min = new double[columns];
+            double[] max = new double[columns];
+            double[] mean = new double[columns];
+            double[] m2 = new double[columns];
+            getDoubles(channel, buffer, min, 0, columns);
+            getDoubles(channel, buffer, max, 0, columns);
+            getDoubles(channel, buffer, mean, 0, columns);
+            getDoubles(channel, buffer, m2, 0, columns);
+
+            double[] data = new double[(int) values];
+            getDoubles(channel, buffer, data, 0, data.length);
+            Normalizer stats = new Normalizer(mode, count, min, max, mean, m2);
+            
+            ColumnDictionary[] dictionaries = new ColumnDictionary[columns];
+            for (int i = 0; i < columns; i++) {
+                require(channel, buffer, 4);
+                int size = buffer.getInt();
+                if (size > 0) {
+                    dictionaries[i] = new ColumnDictionary();
+                }
+                for (int j = 0; j < size; j++) {
+                    require(channel, buffer, 4);
+                    byte[] bytes = new byte[buffer.getInt()];
+                    getBytes(channel, buffer, bytes);
+                    dictionaries[i].code(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+            return new DatasetCache(new Dataset(data, rows, columns), stats, dictionaries, classColumn);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the cache of a source file, replacing any older cache. Datasets
+     * too large for one array are not cached.
+     * @param file_name source file of the dataset
+     * @param descriptor how the dataset was parsed
+     * @param data normalized dataset
+     * @param stats statistics the dataset was normalized with
+     * @param dictionaries dictionary of every column, null entries for none
+     * @param classColumn column holding the class codes, -1 for none
+     */
+    public static void write(String file_name, DatasetDescriptor descriptor, Dataset data, Normalizer stats,
+            ColumnDictionary[] dictionaries, int classColumn) {
+        File source = new File(file_name);
+        File cache = cacheFile(file_name);
+        int rows = data.rows();
+        int columns = stats.columns();
+        if ((long) rows * columns > MAX_VALUES) {
+            cache.delete();
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(0);
+            buffer.putInt(rows);
+            buffer.putInt(columns);
+            buffer.putLong(source.length());
+            buffer.putLong(source.lastModified());
+            buffer.putLong(hash(source));
+            buffer.putLong(stats.count());
+            buffer.putInt(stats.mode().ordinal());
+            buffer.putInt(descriptor.layoutHash());
+            buffer.putInt(classColumn);
+
+            putDoubles(channel, buffer, stats.min(), 0, columns);
+            putDoubles(channel, buffer, stats.max(), 0, columns);
+            putDoubles(channel, buffer, stats.mean(), 0, columns);
+            putDoubles(channel, buffer, stats.m2(), 0, columns);
+            if (data.isContiguous()) {
+                putDoubles(channel, buffer, data.values(), 0, rows * columns);
+            } else {
+                for (int i = 0; i < rows; i++) {
+                    putDoubles(channel, buffer, data.values(), data.offset(i), columns);
+                }
+            }
+            
+            for (int i = 0; i < columns; i++) {
+                int count = dictionaries[i] == null ? 0 : dictionaries[i].size();
+                reserve(channel, buffer, 4);
+                buffer.putInt(count);
+                for (int j = 0; j < count; j++) {
+                    byte[] value = dictionaries[i].value(j).getBytes(StandardCharsets.UTF_8);
+                    reserve(channel, buffer, 4);
+                    buffer.putInt(value.length);
+                    putBytes(channel, buffer, value);
+                }
+            }
+            flush(channel, buffer);
+
+            // Only mark the cache valid once everything else is written
+            channel.force(false);
+            buffer.clear();
+            buffer.putInt(VERSION);
+            buffer.flip();
+            channel.write(buffer, 4);
+            channel.force(false);
+        } catch (IOException e) {
+            System.out.println("Could not write dataset cache " + cache);
+            cache.delete();
+        }
+    }
+
+    /**
+     * Store a new source modification time in a valid cache.
+     */
+    private static void updateModified(File cache, long modified) {
+        try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(modified);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, 24 + buffer.position());
+            }
+        } catch (IOException e) {
+            // The cache stays valid, it is only checked by hash again
+        }
+    }
+
+    /**
+     * Make at least bytes of buffer readable, reading more of the channel
+     * after the values still unread.
+     */
+    private static void require(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void getDoubles(FileChannel channel, ByteBuffer buffer, double[] values, int offset, int length)
+            throws IOException {
+        while (length > 0) {
+            require(channel, buffer, 8);
+            int count = Math.min(length, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + 8 * count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private static void getBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            require(channel, buffer, 1);
+            int count = Math.min(bytes.length - offset, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Write out what buffer holds and empty it.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Make room for at least bytes in buffer.
+     */
+    private static void reserve(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void putDoubles(FileChannel channel, ByteBuffer buffer, double[] values, int offset, int length)
+            throws IOException {
+        while (length > 0) {
+            reserve(channel, buffer, 8);
+            int count = Math.min(length, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + 8 * count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            reserve(channel, buffer, 1);
+            int count = Math.min(bytes.length - offset, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * CRC32 of the contents of a file.
+     */
+    private static long hash(File source) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long window = 1L << 30;
+            for (long position = 0; position < size; position += window) {
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, size - position));
+                crc.update(mapped);
+            }
+        }
+        return crc.getValue();
+    }
+
+    public Dataset data() {
+        return data;
+    }
+
+    /**
+     * @return statistics the cached dataset was normalized with
+     */
+    public Normalizer stats() {
+        return stats;
+    }
+
+    /**
+     * @return dictionary of every column, null for columns without one
+     */
+    public ColumnDictionary[] dictionaries() {
+        return dictionaries;
+    }
+
+    /**
+     * @return column holding the class codes, -1 if the dataset has none
+     */
+    public int classColumn() {
+        return classColumn;
+    }
+
+    /**
+     * @return class code of every row, which the dictionary of the class
+     *         column maps back to its name, or null without a class column
+     */
+    public int[] classes() {
+        if (classColumn < 0) {
+            return null;
+        }
+        int[] classes = new int[data.rows()];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = (int) Math.round(stats.restore(classColumn, data.get(i, classColumn)));
+        }
+        return classes;
+    }
+}
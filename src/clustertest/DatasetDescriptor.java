@@ -0,0 +1,111 @@
+package clustertest;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Describes how to read one dataset: where it is, what separates its values,
+ * which columns to leave out and the parameters tuned for it per algorithm.
+ * Column indexes may be negative to count from the end, so -1 is the last
+ * column of the file.
+ */
+public class DatasetDescriptor {
+
+    private final String name;
+    private final String path;
+    private final char delimiter;
+    private final int[] drop;
+    private final Integer classColumn;
+    private final JSONObject parameters;
+
+    /**
+     * Descriptor of a comma separated file read as is.
+     * @param path
+     */
+    public DatasetDescriptor(String path) {
+        this.name = path;
+        this.path = path;
+        this.delimiter = ',';
+        this.drop = new int[0];
+        this.classColumn = null;
+        this.parameters = new JSONObject();
+    }
+
+    /**
+     * Descriptor from its registry entry:
+     *
+     *   { "name": "bupa", "path": "data/bupa.csv", "delimiter": ",",
+     *     "drop": [-1], "classColumn": -1,
+     *     "parameters": { "DBScan": { "minPoints": 7, "deviations": -0.17 } } }
+     *
+     * Only the path is required.
+     * @param json
+     */
+    public DatasetDescriptor(JSONObject json) {
+        this.path = json.getString("path");
+        this.name = json.optString("name", path);
+        String separator = json.optString("delimiter", ",");
+        this.delimiter = separator.isEmpty() ? ',' : separator.charAt(0);
+        JSONArray dropArray = json.optJSONArray("drop");
+        this.drop = new int[dropArray == null ? 0 : dropArray.length()];
+        for (int i = 0; i < drop.length; i++) {
+            drop[i] = dropArray.getInt(i);
+        }
+        this.classColumn = json.has("classColumn") ? json.getInt("classColumn") : null;
+        JSONObject tuned = json.optJSONObject("parameters");
+        this.parameters = tuned == null ? new JSONObject() : tuned;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    /**
+     * @return the character between values; whitespace always separates too
+     */
+    public char delimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @return columns of the file that are skipped while parsing
+     */
+    public int[] drop() {
+        return drop;
+    }
+
+    /**
+     * The class column is always read as categorical, so its values get the
+     * codes of its dictionary and can be mapped back to the class names.
+     * @return column of the file holding the class attribute, null if unknown
+     */
+    public Integer classColumn() {
+        return classColumn;
+    }
+
+    /**
+     * @param algorithm simple class name of the clustering algorithm
+     * @return parameters tuned for the algorithm, empty if there are none
+     */
+    public JSONObject parameters(String algorithm) {
+        JSONObject tuned = parameters.optJSONObject(algorithm);
+        return tuned == null ? new JSONObject() : tuned;
+    }
+
+    /**
+     * Hash of everything that changes the parsed values, so a cache written
+     * under a different description is not reused.
+     * @return the hash
+     */
+    public int layoutHash() {
+        int hash = delimiter;
+        for (int column : drop) {
+            hash = 31 * hash + column;
+        }
+        return 31 * hash + (classColumn == null ? Integer.MIN_VALUE : classColumn);
+    }
+}
@@ -0,0 +1,90 @@
+package clustertest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Registry of dataset descriptors, read from a JSON file so datasets can be
+ * added or tuned without recompiling. The file is "datasets.json" in the
+ * working directory unless the system property "datasets" names another:
+ *
+ *   { "datasets": [ { "path": "data/seeds.data", ... }, ... ] }
+ *
+ * Datasets missing from the registry are read as plain comma separated files.
+ */
+public class DatasetRegistry {
+
+    private static final String DEFAULT_FILE = "datasets.json";
+
+    private static DatasetRegistry instance;
+
+    // Descriptors by path, in the order they are listed
+    private final LinkedHashMap<String, DatasetDescriptor> descriptors;
+
+    /**
+     * Read a registry file.
+     * @param file
+     * @throws IOException
+     */
+    public DatasetRegistry(File file) throws IOException {
+        this(new JSONObject(FileUtils.readFileToString(file)));
+    }
+
+    public DatasetRegistry(JSONObject json) {
+        descriptors = new LinkedHashMap<>();
+        JSONArray datasets = json.getJSONArray("datasets");
+        for (int i = 0; i < datasets.length(); i++) {
+            DatasetDescriptor descriptor = new DatasetDescriptor(datasets.getJSONObject(i));
+            descriptors.put(descriptor.path(), descriptor);
+        }
+    }
+
+    private DatasetRegistry() {
+        descriptors = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return the registry of the working directory, read on first use
+     */
+    public static synchronized DatasetRegistry getInstance() {
+        if (instance == null) {
+            File file = new File(System.getProperty("datasets", DEFAULT_FILE));
+            try {
+                instance = file.isFile() ? new DatasetRegistry(file) : new DatasetRegistry();
+            } catch (IOException | org.json.JSONException e) {
+                System.out.println("Could not read dataset registry " + file + ": " + e.getMessage());
+                instance = new DatasetRegistry();
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param dataset path or name of a dataset
+     * @return its descriptor, or a plain comma separated one if not registered
+     */
+    public DatasetDescriptor get(String dataset) {
+        DatasetDescriptor descriptor = descriptors.get(dataset);
+        if (descriptor != null) {
+            return descriptor;
+        }
+        for (DatasetDescriptor candidate : descriptors.values()) {
+            if (candidate.name().equals(dataset)) {
+                return candidate;
+            }
+        }
+        return new DatasetDescriptor(dataset);
+    }
+
+    /**
+     * @return paths of every registered dataset, in the order listed
+     */
+    public String[] paths() {
+        return new ArrayList<>(descriptors.keySet()).toArray(new String[0]);
+    }
+}
@@ -1,6 +1,8 @@
 package clustertest;
 
 import clustering.*;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -11,8 +13,15 @@ public class Experimenter {
     
     // Clustering algorithm objects to used in experiments.
     private final Cluster[] clusters;
-    private final double[][] dataset;
+    private final Dataset dataset;
     private final boolean verbose;
+    private final boolean singlePrecisionDistances;
+    // Where to keep the distances used for scoring, null to pick by size
+    private final DistanceStorage distanceStorage;
+    // Also run every algorithm on a single precision copy of the data
+    private boolean comparePrecision;
+    // Distance the results are scored with
+    private DistanceMetric metric = DistanceMetric.EUCLIDEAN;
     
     // Number of iterations through the randomly arranged dataset
     private final int TEST_ITERATIONS;
@@ -24,11 +33,56 @@ public class Experimenter {
      * @param in_dataset    Dataset to test on.
      * @param iterations    number of test runs over the dataset
      */
-    public Experimenter(Cluster[] in_clusters, double[][] in_dataset, int iterations, boolean verbose) {
+    public Experimenter(Cluster[] in_clusters, Dataset in_dataset, int iterations, boolean verbose) {
+        this(in_clusters, in_dataset, iterations, verbose, false);
+    }
+    
+    /**
+     * @param in_clusters   Array of clustering algorithm (Cluster) objects.
+     * @param in_dataset    Dataset to test on.
+     * @param iterations    number of test runs over the dataset
+     * @param singlePrecisionDistances store the distances used for scoring as
+     *                      floats, halving their memory
+     */
+    public Experimenter(Cluster[] in_clusters, Dataset in_dataset, int iterations, boolean verbose, boolean singlePrecisionDistances) {
+        this(in_clusters, in_dataset, iterations, verbose, singlePrecisionDistances, null);
+    }
+    
+    /**
+     * @param in_clusters   Array of clustering algorithm (Cluster) objects.
+     * @param in_dataset    Dataset to test on.
+     * @param iterations    number of test runs over the dataset
+     * @param singlePrecisionDistances store the distances used for scoring as
+     *                      floats, halving their memory
+     * @param distanceStorage where to keep the distances used for scoring,
+     *                      null to pick by size
+     */
+    public Experimenter(Cluster[] in_clusters, Dataset in_dataset, int iterations, boolean verbose, boolean singlePrecisionDistances, DistanceStorage distanceStorage) {
         clusters = in_clusters;
         dataset = in_dataset;
         TEST_ITERATIONS = iterations;
         this.verbose  = verbose;
+        this.singlePrecisionDistances = singlePrecisionDistances;
+        this.distanceStorage = distanceStorage;
+    }
+    
+    /**
+     * Also run every algorithm on a float32 copy of each shuffled dataset, and
+     * report its results under the double precision ones. Both are scored
+     * against the same double precision data and distances.
+     * @param comparePrecision true to add the float32 runs
+     */
+    public void setComparePrecision(boolean comparePrecision) {
+        this.comparePrecision = comparePrecision;
+    }
+    
+    /**
+     * Score the results with another distance than Euclidean. The algorithms
+     * keep their own metric, set on each of them.
+     * @param metric
+     */
+    public void setDistanceMetric(DistanceMetric metric) {
+        this.metric = metric;
     }
     
     /**
@@ -38,23 +92,29 @@ public class Experimenter {
      */
     public void run(String dataName, boolean debugging) {
         
-        Results[][] results = new Results[clusters.length][TEST_ITERATIONS];
+        int precisions = comparePrecision ? 2 : 1;
+        Results[][] results = new Results[clusters.length * precisions][TEST_ITERATIONS];
         
         // Copy the dataset
         for (int i = 0; i < TEST_ITERATIONS; i++) {
             // Shuffle data
-            int[] indices = new int[dataset.length];
-            double[][] data = DataTools.shuffleData(dataset);
-            double[][] distances = DataTools.distancesTo(data);
+            Dataset data = DataTools.shuffleData(dataset);
+            DistanceMatrix distances = distanceStorage == null
+                    ? DataTools.distancesTo(data, singlePrecisionDistances, metric)
+                    : DataTools.distancesTo(data, singlePrecisionDistances, distanceStorage, metric);
+            Dataset singleData = comparePrecision ? data.toSinglePrecision() : null;
             
             int algorithmIndex = 0;
             
-            for (Cluster cluster : clusters) {
+            for (int run = 0; run < clusters.length * precisions; run++) {
+                Cluster cluster = clusters[run / precisions];
+                boolean single = run % precisions == 1;
+                
                 // Get the start time
                 long startTime = System.currentTimeMillis();
                 
                 // Label every datapoint in the dataset
-                int[] labels = cluster.run(data);
+                int[] labels = cluster.run(single ? singleData : data);
                 ArrayList<Integer> newLabels = new ArrayList<>();
                 for (int j = 0; j < labels.length; j++) {
                     if (newLabels.contains(labels[j])) {
@@ -69,13 +129,22 @@ public class Experimenter {
                 
                 // Add a Results object to the results array
                 results[algorithmIndex][i] = new Results(data, labels, 
-                        end - startTime, cluster.toString(), distances, dataName);
+                        end - startTime, single ? cluster.getClass().getSimpleName() + " float32" : cluster.toString(), distances, dataName, metric);
                 
                 // Increment i, increment algorithm index, print out status.
                 //i += 1;
                 algorithmIndex += 1;
                 System.out.println("Completed iteration " + algorithmIndex + " of " + TEST_ITERATIONS);
             }
+            
+            // The results are scored, so the distances can go before the next shuffle
+            if (distances instanceof Closeable) {
+                try {
+                    ((Closeable) distances).close();
+                } catch (IOException e) {
+                    System.out.println("Could not release the distances: " + e.getMessage());
+                }
+            }
         }
         
         System.out.println();
@@ -213,10 +282,10 @@ public class Experimenter {
             cohesionAves[i] = cohesion;
             cohesionErrs[i] = 100.0 * cohesionErr;
         }
-        System.out.println("-------------------------------------------Averages-------------------------------------------");
-        System.out.println("Algorithm           | Percent Clustered | Cluster Size | Cluster Count | Separation | Cohesion");
+        System.out.println("-----------------------------------------------Averages-----------------------------------------------");
+        System.out.println("Algorithm                   | Percent Clustered | Cluster Size | Cluster Count | Separation | Cohesion");
         for (int i = 0; i < results.length; i++) {
-            System.out.format("%-20s| %-18.3f| %-13.3f| %-14.3f| %-11.3f| %.3f%n",
+            System.out.format("%-28s| %-18.3f| %-13.3f| %-14.3f| %-11.3f| %.3f%n",
                     results[i][0].algorithm(),
                     percentClusteredAves[i],
                     clusterSizeAves[i],
@@ -225,10 +294,10 @@ public class Experimenter {
                     cohesionAves[i]);
         }
         
-        System.out.println("----------------------------------------Percent Errors----------------------------------------");
-        System.out.println("Algorithm           | Percent Clustered | Cluster Size | Cluster Count | Separation | Cohesion");
+        System.out.println("--------------------------------------------Percent Errors--------------------------------------------");
+        System.out.println("Algorithm                   | Percent Clustered | Cluster Size | Cluster Count | Separation | Cohesion");
         for (int i = 0; i < results.length; i++) {
-        System.out.format("%-20s| %-18.3f| %-13.3f| %-14.3f| %-11.3f| %.3f%n",
+        System.out.format("%-28s| %-18.3f| %-13.3f| %-14.3f| %-11.3f| %.3f%n",
                     results[i][0].algorithm(),
                     percentClusteredErrs[i],
                     clusterSizeErrs[i],
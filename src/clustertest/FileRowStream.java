@@ -0,0 +1,157 @@
+package clustertest;
+
+import clustering.Dataset;
+import clustering.RowStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A CSV read as a stream of normalized batches, for files too large to load.
+ * The file is read BUFFER_SIZE bytes at a time and every complete line is
+ * parsed into the parser's rows; rows are dropped again once they have been
+ * returned, so only about one batch is held in memory. The same parser reads
+ * every pass, so categorical columns keep their codes from pass to pass.
+ *
+ * Rows are normalized with statistics given up front, or gathered by reading
+ * the whole file once when the stream is opened.
+ */
+public class FileRowStream implements RowStream {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String file_name;
+    private final DataParser parser;
+    private final Normalizer stats;
+    private byte[] buffer;
+    private ByteBuffer wrapped;
+
+    private InputStream in;
+    private int length;
+    private boolean ended;
+    // Rows at the start of the parser's buffer returned by the last batch
+    private int returned;
+
+    /**
+     * Stream a dataset normalized with statistics gathered by a first pass
+     * over the file.
+     * @param file_name
+     * @param descriptor delimiter and columns to drop
+     * @param mode
+     * @throws IOException
+     */
+    public FileRowStream(String file_name, DatasetDescriptor descriptor, Normalizer.Mode mode) throws IOException {
+        this.file_name = file_name;
+        this.parser = new DataParser(descriptor, mode);
+        this.buffer = new byte[BUFFER_SIZE];
+        this.wrapped = ByteBuffer.wrap(buffer);
+        reset();
+        while (read()) {
+            parser.rows().removeFirst(parser.rows().rows());
+        }
+        this.stats = parser.stats() == null ? null : parser.stats().withMode(mode);
+        reset();
+    }
+
+    /**
+     * Stream a dataset normalized with known statistics, such as those of
+     * DataTools.loadStatistics.
+     * @param file_name
+     * @param descriptor delimiter and columns to drop
+     * @param stats
+     * @throws IOException
+     */
+    public FileRowStream(String file_name, DatasetDescriptor descriptor, Normalizer stats) throws IOException {
+        this.file_name = file_name;
+        this.parser = new DataParser(descriptor, stats.mode());
+        this.buffer = new byte[BUFFER_SIZE];
+        this.wrapped = ByteBuffer.wrap(buffer);
+        this.stats = stats;
+        reset();
+    }
+
+    /**
+     * @return statistics the rows are normalized with, null if the file has no rows
+     */
+    public Normalizer stats() {
+        return stats;
+    }
+
+    @Override
+    public int columns() {
+        return stats == null ? 0 : stats.columns();
+    }
+
+    @Override
+    public Dataset next(int maxRows) throws IOException {
+        RowBuffer rows = parser.rows();
+        rows.removeFirst(returned);
+        returned = 0;
+        while (rows.rows() < maxRows && read()) {
+        }
+        int count = Math.min(maxRows, rows.rows());
+        if (count == 0) {
+            return null;
+        }
+        returned = count;
+        return stats.transform(new Dataset(rows.values(), count, rows.columns()));
+    }
+
+    @Override
+    public void reset() throws IOException {
+        close();
+        in = new FileInputStream(file_name);
+        length = 0;
+        ended = false;
+        parser.rows().removeFirst(parser.rows().rows());
+        returned = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+
+    /**
+     * Read the file until at least one more line is parsed, as in
+     * DataParser.parse(InputStream).
+     * @return false once the whole file has been parsed
+     */
+    private boolean read() throws IOException {
+        if (ended) {
+            return false;
+        }
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+
+            int lastLine = length - 1;
+            while (lastLine >= 0 && buffer[lastLine] != '\n') {
+                lastLine--;
+            }
+
+            if (lastLine >= 0) {
+                // Parse every complete line, keep the partial one for the next read
+                parser.parse(wrapped, 0, lastLine + 1);
+                length -= lastLine + 1;
+                System.arraycopy(buffer, lastLine + 1, buffer, 0, length);
+                return true;
+            } else if (length == buffer.length) {
+                // A single line longer than the buffer
+                buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+                wrapped = ByteBuffer.wrap(buffer);
+            }
+        }
+
+        ended = true;
+        if (length > 0) {
+            parser.parse(wrapped, 0, length);
+            length = 0;
+        }
+        return true;
+    }
+}
@@ -8,24 +8,16 @@ import PSO.*;
 
 public class Main
 {
-    // Array of every file name. Indices are the same as the datasets.
-    public static String[] dataFile = {
-        "data/movement_libras.csv",//0
-        "data/turkiye-student-evaluation_generic.csv",//1
-        "data/airfoil.data",//2
-        "data/seeds.data",//3
-        "data/synthetic_control.data",//4
-        "data/dow_jones.data",//5
-        "data/SPECTF.csv",//6
-        "data/gesture.csv",//7
-        "data/wholesale.csv",//8
-        "data/bupa.csv",//9
-    };
+    // Array of every file name, in the order of datasets.json.
+    //  0 movement_libras, 1 turkiye-student-evaluation, 2 airfoil, 3 seeds,
+    //  4 synthetic_control, 5 dow_jones, 6 SPECTF, 7 gesture, 8 wholesale, 9 bupa
+    public static String[] dataFile = DatasetRegistry.getInstance().paths();
 
     /**
      * To run a specific clustering algorithm, specify its parameters in its
      * respective array and select set the fileIndex variable to the index of 
-     * the desired dataset.
+     * the desired dataset, or pass the name or path of a registered dataset as
+     * the first argument.
      * 
      * @param args the command line arguments
      */
@@ -35,22 +27,38 @@ public class Main
         int testIterations = 1;  // Specify the number of test iterations
         boolean debugging = false;  // Set to true if you want to print data for individual runs.
         boolean verbose = true;  // Set to true for verbose mode (demonstrate functionality).
+        boolean comparePrecision = false;  // Set to true to also run every algorithm in float32.
+        DistanceMetric metric = DistanceMetric.EUCLIDEAN;  // Distance used by the algorithms and the scores.
+        
+        String dataName = args.length > 0
+                ? DatasetRegistry.getInstance().get(args[0]).path()
+                : dataFile[fileIndex];
         
         // Initialize dataset
-        double[][] dataset = DataTools.getDataFromFile(dataFile[fileIndex]);
+        Dataset dataset = DataTools.loadDataset(dataName);
         
         // Init cluster algorithms
+        ACO aco = new ACO(new double[]{10, 3}, verbose);
+        DBScan.DBScan dbscan = new DBScan.DBScan(dataName, verbose);
+        kMeansClusterer kMeans = new kMeansClusterer(.001, 10, verbose);
+        PSO pso = new PSO(0.2, 0.2, 0.1, 75, verbose, 0.001, 10);
+        aco.setDistanceMetric(metric);
+        dbscan.setDistanceMetric(metric);
+        kMeans.setDistanceMetric(metric);
+        pso.setDistanceMetric(metric);
         Cluster[] clusters = new Cluster[] {
             new CompetitiveLearning(new double[]{.01, .01, 200, 100000}, verbose),
-            new ACO(new double[]{10, 3}, verbose),
-            new DBScan.DBScan(dataFile[fileIndex], verbose),
-            new kMeansClusterer(.001, 10, verbose),
-            new PSO(0.2, 0.2, 0.1, 75, verbose, 0.001, 10)
+            aco,
+            dbscan,
+            kMeans,
+            pso
         };
         
         Experimenter experiment = new Experimenter(clusters, dataset, testIterations,verbose);
+        experiment.setComparePrecision(comparePrecision);
+        experiment.setDistanceMetric(metric);
         
         // Run experiment
-        experiment.run(dataFile[fileIndex], debugging);
+        experiment.run(dataName, debugging);
     }
 }
@@ -0,0 +1,316 @@
+package clustertest;
+
+import clustering.Dataset;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Per-column statistics of a dataset, gathered one row at a time in a single
+ * pass: minimum, maximum, and the mean and variance with Welford's update.
+ * The statistics normalize the dataset either to [0, 1] (MIN_MAX) or to zero
+ * mean and unit variance (Z_SCORE). A constant column normalizes to 0.
+ * The statistics can be exported to JSON, so new points can be transformed
+ * the same way later without reading the dataset again.
+ */
+public class Normalizer {
+
+    public enum Mode {
+        MIN_MAX, Z_SCORE
+    }
+
+    private final Mode mode;
+    private final int columns;
+    private long count;
+    private final double[] min, max, mean, m2;
+
+    /**
+     * Create empty statistics.
+     * @param mode how transform normalizes values
+     * @param columns number of columns of every row
+     */
+    public Normalizer(Mode mode, int columns) {
+        this.mode = mode;
+        this.columns = columns;
+        count = 0;
+        min = new double[columns];
+        max = new double[columns];
+        mean = new double[columns];
+        m2 = new double[columns];
+        for (int i = 0; i < columns; i++) {
+            min[i] = Double.POSITIVE_INFINITY;
+            max[i] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Create statistics from their JSON export.
+     * @param json
+     */
+    public Normalizer(JSONObject json) {
+        this(Mode.valueOf(json.getString("mode")), json.getJSONArray("min").length());
+        count = json.getLong("count");
+        JSONArray minArray = json.getJSONArray("min");
+        JSONArray maxArray = json.getJSONArray("max");
+        JSONArray meanArray = json.getJSONArray("mean");
+        JSONArray m2Array = json.getJSONArray("m2");
+        for (int i = 0; i < columns; i++) {
+            min[i] = minArray.getDouble(i);
+            max[i] = maxArray.getDouble(i);
+            mean[i] = meanArray.getDouble(i);
+            m2[i] = m2Array.getDouble(i);
+        }
+    }
+
+    /**
+     * Create statistics from a JSON file written by export(File).
+     * @param file
+     * @throws IOException
+     */
+    public Normalizer(File file) throws IOException {
+        this(new JSONObject(FileUtils.readFileToString(file)));
+    }
+
+    /**
+     * Create statistics from raw values, as stored by DatasetCache.
+     */
+    Normalizer(Mode mode, long count, double[] min, double[] max, double[] mean, double[] m2) {
+        this.mode = mode;
+        this.columns = min.length;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.m2 = m2;
+    }
+
+    /**
+     * Add one row to the statistics.
+     * @param values array holding the row
+     * @param offset index of the first column of the row in values
+     */
+    public void add(double[] values, int offset) {
+        count++;
+        for (int i = 0; i < columns; i++) {
+            double value = values[offset + i];
+            if (value < min[i]) {
+                min[i] = value;
+            }
+            if (value > max[i]) {
+                max[i] = value;
+            }
+            double delta = value - mean[i];
+            mean[i] += delta / count;
+            m2[i] += delta * (value - mean[i]);
+        }
+    }
+
+    public void add(double[] row) {
+        add(row, 0);
+    }
+
+    /**
+     * Add every row of a dataset to the statistics.
+     * @param dataset
+     */
+    public void add(Dataset dataset) {
+        if (dataset.isSinglePrecision()) {
+            double[] row = new double[columns];
+            for (int i = 0; i < dataset.rows(); i++) {
+                add(dataset.copyRow(i, row));
+            }
+            return;
+        }
+        for (int i = 0; i < dataset.rows(); i++) {
+            add(dataset.values(), dataset.offset(i));
+        }
+    }
+
+    /**
+     * Combine the statistics of other rows into these (Chan et al.).
+     * @param other statistics over the same columns
+     */
+    public void merge(Normalizer other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        for (int i = 0; i < columns; i++) {
+            min[i] = Math.min(min[i], other.min[i]);
+            max[i] = Math.max(max[i], other.max[i]);
+            double delta = other.mean[i] - mean[i];
+            mean[i] += delta * other.count / total;
+            m2[i] += other.m2[i] + delta * delta * ((double) count * other.count / total);
+        }
+        count = total;
+    }
+
+    /**
+     * @param column
+     * @return statistics without the given column
+     */
+    public Normalizer withoutColumn(int column) {
+        return new Normalizer(mode, count,
+                remove(min, column), remove(max, column), remove(mean, column), remove(m2, column));
+    }
+
+    /**
+     * @param newMode
+     * @return the same statistics, normalizing with another mode
+     */
+    public Normalizer withMode(Mode newMode) {
+        return new Normalizer(newMode, count, min.clone(), max.clone(), mean.clone(), m2.clone());
+    }
+
+    private static double[] remove(double[] values, int index) {
+        double[] output = new double[values.length - 1];
+        System.arraycopy(values, 0, output, 0, index);
+        System.arraycopy(values, index + 1, output, index, output.length - index);
+        return output;
+    }
+
+    /**
+     * Normalize one value of a column.
+     * @param column
+     * @param value
+     * @return the normalized value
+     */
+    public double transform(int column, double value) {
+        if (mode == Mode.MIN_MAX) {
+            double range = max[column] - min[column];
+            return range > 0 ? (value - min[column]) / range : 0.0;
+        }
+        double deviation = standardDeviation(column);
+        return deviation > 0 ? (value - mean[column]) / deviation : 0.0;
+    }
+
+    /**
+     * Undo transform on one value of a column. A constant column gives back
+     * its only value.
+     * @param column
+     * @param value normalized value
+     * @return the value before normalizing
+     */
+    public double restore(int column, double value) {
+        if (mode == Mode.MIN_MAX) {
+            double range = max[column] - min[column];
+            return range > 0 ? min[column] + value * range : min[column];
+        }
+        double deviation = standardDeviation(column);
+        return deviation > 0 ? mean[column] + value * deviation : mean[column];
+    }
+
+    /**
+     * Normalize a point in place.
+     * @param point one value per column
+     * @return point
+     */
+    public double[] transform(double[] point) {
+        for (int i = 0; i < columns; i++) {
+            point[i] = transform(i, point[i]);
+        }
+        return point;
+    }
+
+    /**
+     * Normalize every row of a dataset in place.
+     * @param dataset
+     * @return dataset
+     */
+    public Dataset transform(Dataset dataset) {
+        if (dataset.isSinglePrecision()) {
+            for (int i = 0; i < dataset.rows(); i++) {
+                for (int j = 0; j < columns; j++) {
+                    dataset.set(i, j, transform(j, dataset.get(i, j)));
+                }
+            }
+            return dataset;
+        }
+        double[] values = dataset.values();
+        double[] shift = new double[columns];
+        double[] spread = new double[columns];
+        for (int i = 0; i < columns; i++) {
+            shift[i] = mode == Mode.MIN_MAX ? min[i] : mean[i];
+            spread[i] = mode == Mode.MIN_MAX ? max[i] - min[i] : standardDeviation(i);
+        }
+        for (int i = 0; i < dataset.rows(); i++) {
+            int offset = dataset.offset(i);
+            for (int j = 0; j < columns; j++) {
+                values[offset + j] = spread[j] > 0 ? (values[offset + j] - shift[j]) / spread[j] : 0.0;
+            }
+        }
+        return dataset;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double[] min() {
+        return min;
+    }
+
+    public double[] max() {
+        return max;
+    }
+
+    public double[] mean() {
+        return mean;
+    }
+
+    double[] m2() {
+        return m2;
+    }
+
+    /**
+     * @param column
+     * @return population variance of the column
+     */
+    public double variance(int column) {
+        return count > 0 ? m2[column] / count : 0.0;
+    }
+
+    public double standardDeviation(int column) {
+        return Math.sqrt(variance(column));
+    }
+
+    /**
+     * Turns the statistics into a JSON object
+     * @return The JSON object
+     */
+    public JSONObject export() {
+        JSONObject json = new JSONObject();
+        json.put("mode", mode.name());
+        json.put("count", count);
+        json.put("min", new JSONArray(min));
+        json.put("max", new JSONArray(max));
+        json.put("mean", new JSONArray(mean));
+        json.put("m2", new JSONArray(m2));
+        return json;
+    }
+
+    /**
+     * Saves the statistics as JSON to a file
+     * @param file File to save JSON to
+     * @throws IOException
+     */
+    public void export(File file) throws IOException {
+        BufferedWriter out = new BufferedWriter(new PrintWriter(new FileWriter(file)));
+        out.write(export().toString(2));
+        out.close();
+    }
+}
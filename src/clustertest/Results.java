@@ -1,5 +1,8 @@
 package clustertest;
 
+import clustering.Dataset;
+import clustering.DistanceMatrix;
+import clustering.DistanceMetric;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -9,12 +12,17 @@ import java.util.HashMap;
  */
 public class Results {
     private final String algorithm, dataName;
-    private final double[][] dataset, distances;
+    private final Dataset dataset;
+    private final DistanceMetric metric;
     private final int[] labels;
     private final long runtime;
     
     private final HashMap<Integer,ArrayList<Integer>> labelsToIndices;
     private final HashMap<Integer,Integer> labelsToSizes;
+    // Scores from the distances, indexed by label, found up front so the
+    // distances can be released once the results are made
+    private final double[][] separations;
+    private final double[] cohesions;
     
     /**
      * 
@@ -26,12 +34,22 @@ public class Results {
      * @param in_distances
      * @param in_indices
      */
-    public Results(double[][] in_dataset, int[] in_labels, long in_runtime, String in_algorithm, double[][] in_distances, String in_dataName) {
+    public Results(Dataset in_dataset, int[] in_labels, long in_runtime, String in_algorithm, DistanceMatrix in_distances, String in_dataName) {
+        this(in_dataset, in_labels, in_runtime, in_algorithm, in_distances, in_dataName, DistanceMetric.EUCLIDEAN);
+    }
+    
+    /**
+     * Results scored with another distance than Euclidean. The distances are
+     * only read here, so they can be released once the results are made.
+     * 
+     * @param in_metric the metric in_distances were found with
+     */
+    public Results(Dataset in_dataset, int[] in_labels, long in_runtime, String in_algorithm, DistanceMatrix in_distances, String in_dataName, DistanceMetric in_metric) {
         dataset = in_dataset;
+        metric = in_metric.forDataset(in_dataset);
         dataName = in_dataName;
         labels = in_labels;
         runtime = in_runtime;
-        distances = in_distances;
         
         int atIndex = in_algorithm.indexOf("@");
         int dotIndex = in_algorithm.indexOf(".");
@@ -58,13 +76,35 @@ public class Results {
                 labelsToIndices.put(label, cluster);
             }
         }
+        
+        int labelCount = 0;
+        for (int label : labelsToIndices.keySet()) {
+            labelCount = Math.max(labelCount, label + 1);
+        }
+        separations = new double[labelCount][labelCount];
+        cohesions = new double[labelCount];
+        for (int a : labelsToIndices.keySet()) {
+            cohesions[a] = cohesion(in_distances, labelsToIndices.get(a));
+            for (int b : labelsToIndices.keySet()) {
+                if (b > a) {
+                    separations[a][b] = separation(in_distances, labelsToIndices.get(a), labelsToIndices.get(b));
+                    separations[b][a] = separations[a][b];
+                }
+            }
+        }
     }
     
     
     public double separation(int clusterA, int clusterB) {
+        return separations[clusterA][clusterB];
+    }
+    
+    public double cohesion(int cluster) {
+        return cohesions[cluster];
+    }
+    
+    private static double separation(DistanceMatrix distances, ArrayList<Integer> clusterListA, ArrayList<Integer> clusterListB) {
         double separation = 0.0;
-        ArrayList<Integer> clusterListA = labelsToIndices.get(clusterA);
-        ArrayList<Integer> clusterListB = labelsToIndices.get(clusterB);
         int lengthA = clusterListA.size();
         int lengthB = clusterListB.size();
         double edgeCount = 0.0;
@@ -74,7 +114,7 @@ public class Results {
             for (int j = 0; j < lengthB; j++) {
                 edgeCount += 1.0;
                 int indexB = clusterListB.get(j);
-                separation += distances[indexA][indexB];
+                separation += distances.get(indexA, indexB);
             }
         }
         
@@ -87,9 +127,8 @@ public class Results {
         return separation;
     }
     
-    public double cohesion(int cluster) {
+    private static double cohesion(DistanceMatrix distances, ArrayList<Integer> clusterList) {
         double cohesion = 0.0;
-        ArrayList<Integer> clusterList = labelsToIndices.get(cluster);
         int length = clusterList.size();
         double edgeCount = 0.0;
         for (int i = 0; i < length; i++) {
@@ -97,7 +136,7 @@ public class Results {
             for (int j = i + 1; j < length; j++) {
                 edgeCount += 1.0;
                 int indexB = clusterList.get(j);
-                cohesion += distances[indexA][indexB];
+                cohesion += distances.get(indexA, indexB);
             }
         }
         
@@ -116,7 +155,7 @@ public class Results {
             int indexA = labelsToIndices.get(clusterA).get(i);
             for (int j = 0; j < labelsToSizes.get(clusterB); j++) {
                 int indexB = labelsToIndices.get(clusterB).get(j);
-                double nextDistance = DataTools.distance(dataset[indexA], dataset[indexB]);
+                double nextDistance = metric.distance(dataset, indexA, indexB);
                 
                 if(nextDistance < distance) {
                     distance = nextDistance;
@@ -205,11 +244,11 @@ public class Results {
     }
     
     public int datasetSize() {
-        return dataset.length;
+        return dataset.rows();
     }
     
     public int numberOfAttributes() {
-        return dataset[0].length;
+        return dataset.columns();
     }
     
     public void testingPrintout() {
@@ -0,0 +1,119 @@
+package clustertest;
+
+import clustering.Dataset;
+
+/**
+ * Growable, row-major buffer of primitive doubles. Rows are appended one at a
+ * time and all rows share the width of the first row appended.
+ */
+public class RowBuffer {
+
+    private double[] values;
+    private int rows;
+    private int columns;
+
+    public RowBuffer() {
+        values = new double[1024];
+        rows = 0;
+        columns = -1;
+    }
+    
+    /**
+     * Create a buffer with a fixed row width.
+     * @param columns width of every row
+     * @param rows number of zeroed rows the buffer starts with
+     */
+    public RowBuffer(int columns, int rows) {
+        this.values = new double[Math.max(columns * rows, 1024)];
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Append a row. Shorter rows are padded with zeros, longer rows are
+     * truncated to the width of the first row.
+     * @param tuple values of the row
+     * @param count number of values of tuple in use
+     */
+    public void addRow(double[] tuple, int count) {
+        if (columns < 0) {
+            columns = count;
+        }
+        int start = rows * columns;
+        ensureCapacity(start + columns);
+        int copy = Math.min(count, columns);
+        System.arraycopy(tuple, 0, values, start, copy);
+        for (int i = copy; i < columns; i++) {
+            values[start + i] = 0.0;
+        }
+        rows++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            long grown = Math.max((long) capacity, (long) values.length * 2);
+            values = java.util.Arrays.copyOf(values, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+        }
+    }
+
+    /**
+     * Copy every row of source into this buffer, starting at row destRow.
+     * @param source buffer with the same row width
+     * @param destRow first row to overwrite
+     */
+    public void copyRows(RowBuffer source, int destRow) {
+        System.arraycopy(source.values, 0, values, destRow * columns, source.rows * source.columns);
+    }
+
+    /**
+     * Drop the first rows, moving the rest to the start of the buffer.
+     * @param count number of rows to drop
+     */
+    public void removeFirst(int count) {
+        count = Math.min(count, rows);
+        System.arraycopy(values, count * columns, values, 0, (rows - count) * columns);
+        rows -= count;
+    }
+
+    public double get(int row, int column) {
+        return values[row * columns + column];
+    }
+
+    public void set(int row, int column, double value) {
+        values[row * columns + column] = value;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return Math.max(columns, 0);
+    }
+
+    /**
+     * @return the backing array; only the first rows() * columns() values are used
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * @return a dataset sharing this buffer's backing array
+     */
+    public Dataset toDataset() {
+        return new Dataset(values, rows, columns());
+    }
+
+    /**
+     * Copy the buffer into a 2D array
+     * @return 2D array data[i][j]
+     */
+    public double[][] toArray() {
+        double[][] data = new double[rows][columns()];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(values, i * columns, data[i], 0, columns);
+        }
+        return data;
+    }
+}
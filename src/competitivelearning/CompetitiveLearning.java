@@ -1,6 +1,7 @@
 package competitivelearning;
 
 import clustering.Cluster;
+import clustering.Dataset;
 import feedforward.ActivationFunction;
 import feedforward.FeedForwardNeuralNetwork;
 
@@ -27,12 +28,12 @@ public class CompetitiveLearning implements Cluster
     /**
      * This is the main runner for the algorithm, it loops through the examples,
      * clustering the network on each example
-     * @param examples a 2-d array of examples. each example has a list of inputs and
+     * @param examples the dataset of examples. each example has a list of inputs and
      *                 expected outputs.
      * @return returns a network that is the result of running backpropagation on the examples
      */
     @Override
-    public int[] run(double[][] examples)
+    public int[] run(Dataset examples)
     {
         //System.out.println("Starting backprop");
         if(verbose)
@@ -41,8 +42,9 @@ public class CompetitiveLearning implements Cluster
         }
         maxClusters = (int)Math.round(parameters[2]);
         FeedForwardNeuralNetwork net = new FeedForwardNeuralNetwork(0,
-                new int[]{examples[0].length, maxClusters}, ActivationFunction.LINEAR,
+                new int[]{examples.columns(), maxClusters}, ActivationFunction.LINEAR,
                 ActivationFunction.LINEAR);
+        net.setSinglePrecision(examples.isSinglePrecision());
         lastDeltas = new double[net.getWeights().length];
         learningRate = parameters[0];
         momentum = parameters[1];
@@ -82,11 +84,8 @@ public class CompetitiveLearning implements Cluster
             double[] input = new double[sizes[0]];
 
             //separate input and output
-            for(int a = 0; a < input.length; a++)
-            {
-                input[a] = examples[index][a];
-            }
-            index = (index + 1) % examples.length;
+            examples.copyRow(index, input);
+            index = (index + 1) % examples.rows();
 
             //run backprop on it
             if(i % 1000 == 0 && verbose)
@@ -317,17 +316,14 @@ public class CompetitiveLearning implements Cluster
         }
     }
 
-    private int[] calculateWinners(double[][] examples, FeedForwardNeuralNetwork net)
+    private int[] calculateWinners(Dataset examples, FeedForwardNeuralNetwork net)
     {
-        int[] outputs = new int[examples.length];
-        for(int k = 0; k < examples.length; k++)
+        int[] outputs = new int[examples.rows()];
+        for(int k = 0; k < examples.rows(); k++)
         {
             double[] input = new double[net.getSizes()[0]];
 
-            for(int a = 0; a < input.length; a++)
-            {
-                input[a] = examples[k][a];
-            }
+            examples.copyRow(k, input);
             double[] output = net.compute(input);
 
             int max = -1;
@@ -28,6 +28,8 @@ public class FeedForwardNeuralNetwork
     private ActivationFunction hiddenActivationFunction, outputActivationFunction;
     private double biasNum = 1.;
     private double linearSlope = 1.;
+    //round weights and outputs to floats
+    private boolean singlePrecision = false;
 
     /**
      * Creates the net from a JSON file
@@ -274,6 +276,10 @@ public class FeedForwardNeuralNetwork
                 {
                     tempOut[a] = applyActivationFunction(sum, outputActivationFunction);
                 }
+                if(singlePrecision)
+                {
+                    tempOut[a] = (float)tempOut[a];
+                }
             }
             lastLayer = sizes[k];
             //fill out return
@@ -317,7 +323,7 @@ public class FeedForwardNeuralNetwork
     public void setWeight(int layerStart, int start, int layerEnd, int end, double newWeight)
     {
         int index = getIndex(layerStart, start, layerEnd, end);
-        weights[index] = newWeight;
+        weights[index] = singlePrecision ? (float)newWeight : newWeight;
     }
 
     /**
@@ -452,5 +458,40 @@ public class FeedForwardNeuralNetwork
     public void setWeights(double[] weights)
     {
         this.weights = weights;
+        if(singlePrecision)
+        {
+            roundWeights();
+        }
+    }
+
+    /**
+     * Sets whether the weights and node outputs are kept in single precision.
+     * Turning it on rounds the current weights to floats.
+     * @param singlePrecision true to round every weight and output to a float
+     */
+    public void setSinglePrecision(boolean singlePrecision)
+    {
+        this.singlePrecision = singlePrecision;
+        if(singlePrecision && weights != null)
+        {
+            roundWeights();
+        }
+    }
+
+    /**
+     * Whether the weights and node outputs are kept in single precision
+     * @return true if they are rounded to floats
+     */
+    public boolean isSinglePrecision()
+    {
+        return singlePrecision;
+    }
+
+    private void roundWeights()
+    {
+        for(int k = 0; k < weights.length; k++)
+        {
+            weights[k] = (float)weights[k];
+        }
     }
 }
@@ -0,0 +1,425 @@
+package kMeans;
+
+import clustering.Dataset;
+import clustering.DistanceMetric;
+import clustering.EuclideanDistance;
+import clustering.NearestCenter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Initial centroids for k-means. k-means++ picks every next centroid with
+ * probability proportional to the squared distance to the closest one picked
+ * so far, so the centroids spread over the data and are never picked twice
+ * while there are distinct inputs left. k-means|| (Bahmani et al.) oversamples
+ * candidates in a few parallel passes over the inputs instead of k sequential
+ * ones. The candidates, weighted by how many inputs are closest to each, are
+ * then clustered into k centroids with k-means++ and a few weighted Lloyd
+ * rounds, which are cheap since there are only about 2 * ROUNDS * k candidates.
+ *
+ * Both draw from a seed only. k-means|| gives every block of inputs its own
+ * generator, so the centroids do not depend on how the blocks are scheduled.
+ */
+final class CentroidSeeding
+{
+    // Inputs per parallel task, fixed so the random streams are too
+    private static final int BLOCK = 4096;
+    // Passes over the inputs, five are enough in practice
+    static final int ROUNDS = 5;
+    private static final int LLOYD_ROUNDS = 20;
+
+    private CentroidSeeding()
+    {
+    }
+
+    /**
+     * Greedy k-means++ seeding: every step draws 2 + ln k candidates and keeps
+     * the one that lowers the sum of squared distances the most, which makes
+     * two centroids in the same cluster much less likely than a single draw.
+     * @return k centroids, copies of inputs
+     */
+    static double[][] plusPlus(Dataset inputs, int k, DistanceMetric metric, long seed)
+    {
+        Random random = new Random(seed);
+        int rows = inputs.rows();
+        int trials = 2 + (int) Math.log(k);
+        double[][] clusters = new double[k][];
+        double[] closest = new double[rows];
+        double[] trial = new double[rows];
+        double[] bestTrial = new double[rows];
+        clusters[0] = inputs.row(random.nextInt(rows));
+
+        double total = 0.0;
+        for (int i = 0; i < rows; i++)
+        {
+            closest[i] = squared(metric, inputs, i, clusters[0]);
+            total += closest[i];
+        }
+
+        for (int j = 1; j < k; j++)
+        {
+            double bestTotal = Double.POSITIVE_INFINITY;
+            for (int t = 0; t < trials; t++)
+            {
+                double[] candidate = inputs.row(sample(closest, total, random));
+                double candidateTotal = 0.0;
+                for (int i = 0; i < rows; i++)
+                {
+                    trial[i] = Math.min(closest[i], squared(metric, inputs, i, candidate));
+                    candidateTotal += trial[i];
+                }
+                if (candidateTotal < bestTotal)
+                {
+                    bestTotal = candidateTotal;
+                    clusters[j] = candidate;
+                    double[] swap = bestTrial;
+                    bestTrial = trial;
+                    trial = swap;
+                }
+            }
+            double[] swap = closest;
+            closest = bestTrial;
+            bestTrial = swap;
+            total = bestTotal;
+        }
+        return clusters;
+    }
+
+    /**
+     * k-means|| seeding, oversampling 2k candidates per pass.
+     * @return k centroids
+     */
+    static double[][] parallel(Dataset inputs, int k, DistanceMetric metric, long seed)
+    {
+        Random random = new Random(seed);
+        int rows = inputs.rows();
+        int blocks = (rows + BLOCK - 1) / BLOCK;
+        double[] closest = new double[rows];
+        double[] blockTotals = new double[blocks];
+
+        ArrayList<double[]> candidates = new ArrayList<>();
+        candidates.add(inputs.row(random.nextInt(rows)));
+        double total = update(inputs, metric, closest, blockTotals, candidates, 0);
+
+        for (int round = 0; round < ROUNDS && total > 0; round++)
+        {
+            RoundTask sampling = new RoundTask(Pass.SAMPLE, inputs, metric, closest, blockTotals, null, 0,
+                    2.0 * k / total, seed + 1 + round, 0, blocks);
+            ForkJoinPool.commonPool().invoke(sampling);
+            int first = candidates.size();
+            for (int row : sampling.sampled)
+            {
+                candidates.add(inputs.row(row));
+            }
+            total = update(inputs, metric, closest, blockTotals, candidates, first);
+        }
+
+        // Weight every candidate by the inputs closest to it
+        double[][] points = candidates.toArray(new double[0][]);
+        RoundTask weighting = new RoundTask(Pass.WEIGHT, inputs, metric, closest, blockTotals, points, 0,
+                0.0, 0L, 0, blocks);
+        ForkJoinPool.commonPool().invoke(weighting);
+        double[][] clusters = weightedPlusPlus(points, weighting.weights, k, metric, random);
+        weightedLloyd(points, weighting.weights, clusters, metric);
+        if (inputs.isSinglePrecision())
+        {
+            for (double[] cluster : clusters)
+            {
+                for (int j = 0; j < cluster.length; j++)
+                {
+                    cluster[j] = (float) cluster[j];
+                }
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Refine centroids with Lloyd rounds over weighted points, until no point
+     * changes cluster or LLOYD_ROUNDS have run. Centroids left without points
+     * stay where they are.
+     */
+    private static void weightedLloyd(double[][] points, double[] weights, double[][] clusters, DistanceMetric metric)
+    {
+        Dataset candidates = new Dataset(points);
+        NearestCenter search = new NearestCenter(metric);
+        int[] assignments = new int[points.length];
+        Arrays.fill(assignments, -1);
+        for (int round = 0; round < LLOYD_ROUNDS; round++)
+        {
+            boolean changed = false;
+            for (int i = 0; i < points.length; i++)
+            {
+                int nearest = search.nearest(candidates, i, clusters);
+                changed |= nearest != assignments[i];
+                assignments[i] = nearest;
+            }
+            if (!changed)
+            {
+                return;
+            }
+
+            double[][] totals = new double[clusters.length][points[0].length];
+            double[] sizes = new double[clusters.length];
+            for (int i = 0; i < points.length; i++)
+            {
+                double[] total = totals[assignments[i]];
+                for (int j = 0; j < total.length; j++)
+                {
+                    total[j] += weights[i] * points[i][j];
+                }
+                sizes[assignments[i]] += weights[i];
+            }
+            for (int c = 0; c < clusters.length; c++)
+            {
+                if (sizes[c] > 0)
+                {
+                    for (int j = 0; j < totals[c].length; j++)
+                    {
+                        clusters[c][j] = totals[c][j] / sizes[c];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Greedy k-means++ over weighted points.
+     */
+    private static double[][] weightedPlusPlus(double[][] points, double[] weights, int k, DistanceMetric metric,
+            Random random)
+    {
+        int trials = 2 + (int) Math.log(k);
+        double[][] clusters = new double[k][];
+        double[] closest = new double[points.length];
+        double[] trial = new double[points.length];
+        double[] bestTrial = new double[points.length];
+        clusters[0] = points[sample(weights, sum(weights), random)].clone();
+
+        double total = 0.0;
+        for (int i = 0; i < points.length; i++)
+        {
+            closest[i] = weights[i] * squared(metric, points[i], clusters[0]);
+            total += closest[i];
+        }
+
+        for (int j = 1; j < k; j++)
+        {
+            double bestTotal = Double.POSITIVE_INFINITY;
+            for (int t = 0; t < trials; t++)
+            {
+                double[] candidate = points[sample(closest, total, random)];
+                double candidateTotal = 0.0;
+                for (int i = 0; i < points.length; i++)
+                {
+                    trial[i] = Math.min(closest[i], weights[i] * squared(metric, points[i], candidate));
+                    candidateTotal += trial[i];
+                }
+                if (candidateTotal < bestTotal)
+                {
+                    bestTotal = candidateTotal;
+                    clusters[j] = candidate.clone();
+                    double[] swap = bestTrial;
+                    bestTrial = trial;
+                    trial = swap;
+                }
+            }
+            double[] swap = closest;
+            closest = bestTrial;
+            bestTrial = swap;
+            total = bestTotal;
+        }
+        return clusters;
+    }
+
+    /**
+     * Lower the distance of every input to the candidates from first on, and
+     * sum the distances.
+     */
+    private static double update(Dataset inputs, DistanceMetric metric, double[] closest, double[] blockTotals,
+            ArrayList<double[]> candidates, int first)
+    {
+        double[][] added = candidates.subList(first, candidates.size()).toArray(new double[0][]);
+        ForkJoinPool.commonPool().invoke(new RoundTask(Pass.UPDATE, inputs, metric, closest, blockTotals, added,
+                first, 0.0, 0L, 0, blockTotals.length));
+        return sum(blockTotals);
+    }
+
+    /**
+     * Pick an index with probability proportional to its weight, or uniformly
+     * if every weight is 0.
+     */
+    private static int sample(double[] weights, double total, Random random)
+    {
+        if (!(total > 0))
+        {
+            return random.nextInt(weights.length);
+        }
+        double target = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++)
+        {
+            target -= weights[i];
+            if (target < 0)
+            {
+                return i;
+            }
+        }
+        // Rounding left a sliver past the last weight
+        for (int i = weights.length - 1; i > 0; i--)
+        {
+            if (weights[i] > 0)
+            {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static double sum(double[] values)
+    {
+        double total = 0.0;
+        for (double value : values)
+        {
+            total += value;
+        }
+        return total;
+    }
+
+    private static double squared(DistanceMetric metric, Dataset inputs, int row, double[] center)
+    {
+        if (metric instanceof EuclideanDistance)
+        {
+            return inputs.squaredDistance(row, center);
+        }
+        double distance = metric.distance(inputs, row, center);
+        return distance * distance;
+    }
+
+    private static double squared(DistanceMetric metric, double[] a, double[] b)
+    {
+        double distance = metric instanceof EuclideanDistance
+                ? DistanceMetric.EUCLIDEAN.distance(a, b) : metric.distance(a, b);
+        return distance * distance;
+    }
+
+    private enum Pass
+    {
+        // Sample candidates with probability proportional to their distance
+        SAMPLE,
+        // Lower the distances to newly added candidates
+        UPDATE,
+        // Count the inputs closest to every candidate
+        WEIGHT
+    }
+
+    /**
+     * One pass of k-means|| over the blocks [from, to).
+     */
+    private static class RoundTask extends RecursiveAction
+    {
+        private final Pass pass;
+        private final Dataset inputs;
+        private final DistanceMetric metric;
+        private final double[] closest;
+        private final double[] blockTotals;
+        private final double[][] candidates;
+        private final int firstCandidate;
+        private final double scale;
+        private final long seed;
+        private final int from, to;
+
+        // Results, merged up the tree in block order
+        ArrayList<Integer> sampled;
+        double[] weights;
+
+        RoundTask(Pass pass, Dataset inputs, DistanceMetric metric, double[] closest, double[] blockTotals,
+                double[][] candidates, int firstCandidate, double scale, long seed, int from, int to)
+        {
+            this.pass = pass;
+            this.inputs = inputs;
+            this.metric = metric;
+            this.closest = closest;
+            this.blockTotals = blockTotals;
+            this.candidates = candidates;
+            this.firstCandidate = firstCandidate;
+            this.scale = scale;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        private RoundTask part(int partFrom, int partTo)
+        {
+            return new RoundTask(pass, inputs, metric, closest, blockTotals, candidates, firstCandidate, scale, seed,
+                    partFrom, partTo);
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1)
+            {
+                int middle = (from + to) >>> 1;
+                RoundTask left = part(from, middle);
+                RoundTask right = part(middle, to);
+                invokeAll(left, right);
+                if (pass == Pass.SAMPLE)
+                {
+                    sampled = left.sampled;
+                    sampled.addAll(right.sampled);
+                }
+                else if (pass == Pass.WEIGHT)
+                {
+                    weights = left.weights;
+                    for (int j = 0; j < weights.length; j++)
+                    {
+                        weights[j] += right.weights[j];
+                    }
+                }
+                return;
+            }
+
+            int start = from * BLOCK;
+            int end = Math.min(inputs.rows(), start + BLOCK);
+            if (pass == Pass.SAMPLE)
+            {
+                Random random = new Random(seed * 0x9E3779B97F4A7C15L + from);
+                sampled = new ArrayList<>();
+                for (int i = start; i < end; i++)
+                {
+                    if (random.nextDouble() < scale * closest[i])
+                    {
+                        sampled.add(i);
+                    }
+                }
+            }
+            else if (pass == Pass.UPDATE)
+            {
+                double total = 0.0;
+                for (int i = start; i < end; i++)
+                {
+                    double distance = firstCandidate == 0 ? Double.POSITIVE_INFINITY : closest[i];
+                    for (double[] candidate : candidates)
+                    {
+                        distance = Math.min(distance, squared(metric, inputs, i, candidate));
+                    }
+                    closest[i] = distance;
+                    total += distance;
+                }
+                blockTotals[from] = total;
+            }
+            else
+            {
+                NearestCenter search = new NearestCenter(metric);
+                weights = new double[candidates.length];
+                for (int i = start; i < end; i++)
+                {
+                    weights[search.nearest(inputs, i, candidates)]++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package kMeans;
+
+import clustering.Dataset;
+import clustering.DistanceMetric;
+import clustering.EuclideanDistance;
+import clustering.NearestCenter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * One Lloyd round with Kanungo's filtering algorithm: the kd-tree is walked
+ * with a set of candidate centroids per node. The candidate closest to the
+ * middle of a node's box removes every other candidate that is farther than
+ * it from all of the box, and a node left with a single candidate is added to
+ * it whole, from the sums kept in the tree. Only the inputs of leaves that
+ * still have several candidates are searched one by one.
+ *
+ * A candidate is removed only if it is farther from every point of the box,
+ * by more than rounding, so the assignments are Lloyd's. The sums are added
+ * in tree order rather than row order, so the centroids can differ from
+ * Lloyd's in the last bits.
+ *
+ * The subtrees below the first levels are shared out as parts, one or two
+ * per thread, each with its own sums and counts, added up in part order as in
+ * LloydStep.
+ */
+class FilteringStep
+{
+    // Candidates are only removed with this relative margin
+    private static final double SLACK = 1e-10;
+
+    private final KdTree tree;
+    private final Dataset inputs;
+    private final int k;
+    private final int columns;
+    // Sums of squares for Euclidean distances, of absolute values otherwise
+    private final boolean squares;
+    private final Part[] parts;
+
+    private double[][] clusters;
+    private int[] assignments;
+
+    FilteringStep(KdTree tree, int k, DistanceMetric metric)
+    {
+        this.tree = tree;
+        this.inputs = tree.inputs;
+        this.k = k;
+        this.columns = tree.columns;
+        this.squares = metric instanceof EuclideanDistance;
+
+        // Nodes at the first level with at least as many nodes as threads
+        int threads = ForkJoinPool.getCommonPoolParallelism();
+        int[] level = {0};
+        while (level.length < threads)
+        {
+            int[] next = new int[level.length * 2];
+            int count = 0;
+            for (int node : level)
+            {
+                if (tree.isLeaf(node))
+                {
+                    next[count++] = node;
+                }
+                else
+                {
+                    next[count++] = tree.left[node];
+                    next[count++] = tree.right[node];
+                }
+            }
+            if (count == level.length)
+            {
+                break;
+            }
+            level = java.util.Arrays.copyOf(next, count);
+        }
+        parts = new Part[level.length];
+        for (int i = 0; i < level.length; i++)
+        {
+            parts[i] = new Part(new NearestCenter(metric), level[i]);
+        }
+    }
+
+    /**
+     * Supports the same metrics as HamerlyBounds: the sums for Euclidean and
+     * Manhattan distances split into one term per dimension, which is what
+     * the test that removes candidates relies on.
+     */
+    static boolean supports(DistanceMetric metric)
+    {
+        return HamerlyBounds.supports(metric);
+    }
+
+    /**
+     * Assign every input to its closest centroid and find the new centroids.
+     * @param clusters current centroids
+     * @param assignments filled with the centroid of every input
+     * @return the new centroids
+     */
+    double[][] step(double[][] clusters, int[] assignments)
+    {
+        this.clusters = clusters;
+        this.assignments = assignments;
+        for (Part part : parts)
+        {
+            part.reinitialize();
+        }
+        if (parts.length == 1)
+        {
+            parts[0].compute();
+        }
+        else
+        {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction()
+            {
+                @Override
+                protected void compute()
+                {
+                    invokeAll(parts);
+                }
+            });
+        }
+
+        double[][] partSums = new double[parts.length][];
+        long[][] partCounts = new long[parts.length][];
+        for (int i = 0; i < parts.length; i++)
+        {
+            partSums[i] = parts[i].sums;
+            partCounts[i] = parts[i].counts;
+        }
+        double[][] newClusters = LloydStep.centroids(clusters, partSums, partCounts, inputs.isSinglePrecision());
+        this.clusters = null;
+        this.assignments = null;
+        return newClusters;
+    }
+
+    /**
+     * Add the counts of every part's search to another search.
+     */
+    void addCounts(NearestCenter search)
+    {
+        for (Part part : parts)
+        {
+            search.addCounts(part.search);
+            part.search.resetCounts();
+        }
+    }
+
+    /**
+     * @return distances computed so far, to inputs, to the middles of boxes
+     *         and between candidates
+     */
+    long calculations()
+    {
+        long calculations = 0;
+        for (Part part : parts)
+        {
+            calculations += part.calculations;
+        }
+        return calculations;
+    }
+
+    private double term(double difference)
+    {
+        return squares ? difference * difference : Math.abs(difference);
+    }
+
+    /**
+     * The subtree of one node and its partial sums.
+     */
+    private class Part extends RecursiveAction
+    {
+        private final NearestCenter search;
+        private final int root;
+        private final double[] sums;
+        private final long[] counts;
+        // Candidates left at every depth below the root
+        private final int[][] candidates;
+        // candidateClusters[m] holds m candidate centroids for the leaf searches
+        private final double[][][] candidateClusters;
+        private final double[] middle;
+        private long calculations;
+
+        Part(NearestCenter search, int root)
+        {
+            this.search = search;
+            this.root = root;
+            this.sums = new double[k * columns];
+            this.counts = new long[k];
+            this.candidates = new int[tree.depth + 2][k];
+            this.candidateClusters = new double[k + 1][][];
+            for (int m = 1; m <= k; m++)
+            {
+                candidateClusters[m] = new double[m][];
+            }
+            this.middle = new double[columns];
+        }
+
+        @Override
+        protected void compute()
+        {
+            java.util.Arrays.fill(sums, 0.0);
+            java.util.Arrays.fill(counts, 0L);
+            int[] all = candidates[0];
+            for (int c = 0; c < k; c++)
+            {
+                all[c] = c;
+            }
+            filter(root, 0, k);
+        }
+
+        /**
+         * Assign the inputs of a node, given the candidates[depth][0, count)
+         * that can still be closest to some of them, in increasing order.
+         */
+        private void filter(int node, int depth, int count)
+        {
+            int[] current = candidates[depth];
+            if (count == 1)
+            {
+                addNode(node, current[0]);
+                return;
+            }
+            if (tree.isLeaf(node))
+            {
+                searchLeaf(node, current, count);
+                return;
+            }
+
+            int offset = node * columns;
+            for (int j = 0; j < columns; j++)
+            {
+                middle[j] = (tree.lower[offset + j] + tree.upper[offset + j]) / 2;
+            }
+            int closest = current[0];
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < count; i++)
+            {
+                double[] centroid = clusters[current[i]];
+                double sum = 0.0;
+                for (int j = 0; j < columns; j++)
+                {
+                    sum += term(middle[j] - centroid[j]);
+                }
+                if (sum < best)
+                {
+                    best = sum;
+                    closest = current[i];
+                }
+            }
+
+            int[] next = candidates[depth + 1];
+            int nextCount = 0;
+            for (int i = 0; i < count; i++)
+            {
+                if (current[i] == closest || !fartherFromBox(clusters[current[i]], clusters[closest], offset))
+                {
+                    next[nextCount++] = current[i];
+                }
+            }
+            calculations += 2L * count - 1;
+
+            filter(tree.left[node], depth + 1, nextCount);
+            filter(tree.right[node], depth + 1, nextCount);
+        }
+
+        /**
+         * Whether centroid is farther than closest from every point of the
+         * box at offset. The difference of the two sums is one term per
+         * dimension, each monotonic along its dimension, so its minimum over
+         * the box is at a corner, taking the smaller end in every dimension.
+         */
+        private boolean fartherFromBox(double[] centroid, double[] closest, int offset)
+        {
+            double difference = 0.0;
+            double scale = 0.0;
+            for (int j = 0; j < columns; j++)
+            {
+                double low = tree.lower[offset + j];
+                double high = tree.upper[offset + j];
+                double lowFar = term(low - centroid[j]);
+                double lowNear = term(low - closest[j]);
+                double highFar = term(high - centroid[j]);
+                double highNear = term(high - closest[j]);
+                if (lowFar - lowNear < highFar - highNear)
+                {
+                    difference += lowFar - lowNear;
+                    scale += lowFar + lowNear;
+                }
+                else
+                {
+                    difference += highFar - highNear;
+                    scale += highFar + highNear;
+                }
+            }
+            return difference > SLACK * scale;
+        }
+
+        private void addNode(int node, int cluster)
+        {
+            counts[cluster] += tree.size(node);
+            int offset = node * columns;
+            int clusterOffset = cluster * columns;
+            for (int j = 0; j < columns; j++)
+            {
+                sums[clusterOffset + j] += tree.sums[offset + j];
+            }
+            for (int i = tree.start[node]; i < tree.end[node]; i++)
+            {
+                assignments[tree.order[i]] = cluster;
+            }
+        }
+
+        private void searchLeaf(int node, int[] current, int count)
+        {
+            double[][] centers = candidateClusters[count];
+            for (int i = 0; i < count; i++)
+            {
+                centers[i] = clusters[current[i]];
+            }
+            for (int i = tree.start[node]; i < tree.end[node]; i++)
+            {
+                int row = tree.order[i];
+                int cluster = current[search.nearest(inputs, row, centers)];
+                assignments[row] = cluster;
+                counts[cluster]++;
+                int clusterOffset = cluster * columns;
+                for (int j = 0; j < columns; j++)
+                {
+                    sums[clusterOffset + j] += inputs.get(row, j);
+                }
+            }
+            calculations += (long) count * tree.size(node);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package kMeans;
+
+import clustering.Dataset;
+import clustering.DistanceMetric;
+import clustering.EuclideanDistance;
+import clustering.ManhattanDistance;
+import java.util.Arrays;
+
+/**
+ * Distance bounds for Hamerly's accelerated k-means. Every input keeps an
+ * upper bound on the distance to its centroid and a lower bound on the
+ * distance to any other centroid. While the upper bound is below the lower
+ * one, or below half the distance from its centroid to the closest other
+ * centroid, the input cannot change cluster and no distances are computed
+ * for it. When centroids move the bounds are loosened by how far they moved.
+ *
+ * The bounds rely on the triangle inequality, so they work for Euclidean
+ * (squared or not, the bounds are kept unsquared) and Manhattan distances.
+ * Inputs whose bounds do not settle it are searched in full, comparing the
+ * same values as NearestCenter, so the assignments are the same as Lloyd's.
+ */
+class HamerlyBounds
+{
+    // Bounds are only trusted with this relative margin, so rounding cannot
+    // keep an input whose closest centroid changed
+    private static final double SLACK = 1e-10;
+
+    private final boolean euclidean;
+    private final DistanceMetric centroidMetric;
+    private final double[] upper;
+    private final double[] lower;
+    private boolean initialized;
+
+    private long calculations;
+    private long avoided;
+
+    HamerlyBounds(int rows, DistanceMetric metric)
+    {
+        euclidean = metric instanceof EuclideanDistance;
+        centroidMetric = euclidean ? DistanceMetric.EUCLIDEAN : DistanceMetric.MANHATTAN;
+        upper = new double[rows];
+        lower = new double[rows];
+    }
+
+    /**
+     * @return true if the metric satisfies the triangle inequality the bounds need
+     */
+    static boolean supports(DistanceMetric metric)
+    {
+        return metric instanceof EuclideanDistance || metric instanceof ManhattanDistance;
+    }
+
+    /**
+     * Assign every input to its closest centroid, skipping the inputs whose
+     * bounds show their centroid has not changed.
+     */
+    void assign(Dataset inputs, double[][] clusters, int[] assignments)
+    {
+        int rows = inputs.rows();
+        int k = clusters.length;
+        long before = calculations;
+
+        if (!initialized)
+        {
+            for (int i = 0; i < rows; i++)
+            {
+                search(inputs, i, clusters, assignments);
+            }
+            initialized = true;
+            return;
+        }
+
+        // Half the distance from every centroid to the closest other one
+        double[] halfGap = new double[k];
+        Arrays.fill(halfGap, Double.POSITIVE_INFINITY);
+        for (int j = 0; j < k; j++)
+        {
+            for (int m = j + 1; m < k; m++)
+            {
+                double gap = centroidMetric.distance(clusters[j], clusters[m]) / 2;
+                halfGap[j] = Math.min(halfGap[j], gap);
+                halfGap[m] = Math.min(halfGap[m], gap);
+            }
+        }
+        calculations += (long) k * (k - 1) / 2;
+        long centroidCalculations = calculations - before;
+
+        for (int i = 0; i < rows; i++)
+        {
+            int assigned = assignments[i];
+            double bound = Math.max(halfGap[assigned], lower[i]);
+            if (upper[i] * (1 + SLACK) < bound)
+            {
+                continue;
+            }
+            upper[i] = distance(inputs, i, clusters[assigned]);
+            calculations++;
+            if (upper[i] * (1 + SLACK) < bound)
+            {
+                continue;
+            }
+            search(inputs, i, clusters, assignments);
+        }
+
+        // Lloyd computes the distance from every input to every centroid
+        avoided += (long) rows * k - (calculations - before - centroidCalculations);
+    }
+
+    /**
+     * Loosen the bounds by how far every centroid moved.
+     */
+    void move(double[][] oldClusters, double[][] newClusters, int[] assignments)
+    {
+        int k = oldClusters.length;
+        double[] moved = new double[k];
+        int farthest = -1;
+        double largest = 0.0;
+        double second = 0.0;
+        for (int j = 0; j < k; j++)
+        {
+            moved[j] = centroidMetric.distance(oldClusters[j], newClusters[j]);
+            if (farthest < 0 || moved[j] > largest)
+            {
+                second = largest;
+                largest = moved[j];
+                farthest = j;
+            }
+            else if (moved[j] > second)
+            {
+                second = moved[j];
+            }
+        }
+        calculations += k;
+
+        for (int i = 0; i < upper.length; i++)
+        {
+            int assigned = assignments[i];
+            upper[i] += moved[assigned];
+            lower[i] -= assigned == farthest ? second : largest;
+        }
+    }
+
+    /**
+     * Find the closest and second closest centroid of an input, setting both
+     * of its bounds exactly.
+     */
+    private void search(Dataset inputs, int row, double[][] clusters, int[] assignments)
+    {
+        int nearest = -1;
+        double best = Double.POSITIVE_INFINITY;
+        double second = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < clusters.length; j++)
+        {
+            double current = euclidean ? inputs.squaredDistance(row, clusters[j])
+                    : DistanceMetric.MANHATTAN.distance(inputs, row, clusters[j]);
+            if (current < best)
+            {
+                second = best;
+                best = current;
+                nearest = j;
+            }
+            else if (current < second)
+            {
+                second = current;
+            }
+        }
+        calculations += clusters.length;
+
+        assignments[row] = nearest;
+        upper[row] = euclidean ? Math.sqrt(best) : best;
+        lower[row] = euclidean ? Math.sqrt(second) : second;
+    }
+
+    private double distance(Dataset inputs, int row, double[] cluster)
+    {
+        return euclidean ? Math.sqrt(inputs.squaredDistance(row, cluster))
+                : DistanceMetric.MANHATTAN.distance(inputs, row, cluster);
+    }
+
+    /**
+     * @return distances computed, including those between centroids
+     */
+    long calculations()
+    {
+        return calculations;
+    }
+
+    /**
+     * @return distances between inputs and centroids Lloyd would have computed
+     *         and these bounds did not
+     */
+    long avoided()
+    {
+        return avoided;
+    }
+}
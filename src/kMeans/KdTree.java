@@ -0,0 +1,187 @@
+package kMeans;
+
+import clustering.Dataset;
+
+/**
+ * A kd-tree over the inputs for the filtering algorithm of Kanungo et al.
+ * Every node covers a contiguous range of a permutation of the rows and keeps
+ * their bounding box, their number and the sum of their values, so a node
+ * whose inputs all go to one centroid is added to it at once. Nodes are split
+ * at the median of their widest dimension until they hold LEAF_SIZE inputs.
+ *
+ * The tree only depends on the inputs, so it is built once and shared by
+ * every round and every restart of a run. Nodes are kept in flat arrays
+ * indexed by node, children after their parent.
+ */
+class KdTree
+{
+    static final int LEAF_SIZE = 8;
+
+    final Dataset inputs;
+    final int columns;
+    // Rows in tree order, node i covers order[start[i]] to order[end[i] - 1]
+    final int[] order;
+    final int[] start;
+    final int[] end;
+    // Children of a node, -1 for leaves
+    final int[] left;
+    final int[] right;
+    // Bounding box and sum of the inputs of node i at i * columns
+    final double[] lower;
+    final double[] upper;
+    final double[] sums;
+    final int depth;
+
+    private int nodes;
+
+    KdTree(Dataset inputs)
+    {
+        this.inputs = inputs;
+        this.columns = inputs.columns();
+        int rows = inputs.rows();
+        order = new int[rows];
+        for (int i = 0; i < rows; i++)
+        {
+            order[i] = i;
+        }
+        // Leaves hold at least LEAF_SIZE / 2 inputs, so there are at most
+        // 2 * rows / (LEAF_SIZE / 2) nodes
+        int capacity = 4 * rows / LEAF_SIZE + 1;
+        start = new int[capacity];
+        end = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        lower = new double[capacity * columns];
+        upper = new double[capacity * columns];
+        sums = new double[capacity * columns];
+        depth = build(0, rows);
+    }
+
+    /**
+     * @return number of nodes, the root is node 0
+     */
+    int nodes()
+    {
+        return nodes;
+    }
+
+    boolean isLeaf(int node)
+    {
+        return left[node] < 0;
+    }
+
+    int size(int node)
+    {
+        return end[node] - start[node];
+    }
+
+    /**
+     * Build the subtree of the rows order[from, to).
+     * @return depth of the subtree, 0 for a leaf
+     */
+    private int build(int from, int to)
+    {
+        int node = nodes++;
+        start[node] = from;
+        end[node] = to;
+        left[node] = -1;
+        right[node] = -1;
+        int offset = node * columns;
+        for (int j = 0; j < columns; j++)
+        {
+            lower[offset + j] = Double.POSITIVE_INFINITY;
+            upper[offset + j] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = from; i < to; i++)
+        {
+            int row = order[i];
+            for (int j = 0; j < columns; j++)
+            {
+                double value = inputs.get(row, j);
+                lower[offset + j] = Math.min(lower[offset + j], value);
+                upper[offset + j] = Math.max(upper[offset + j], value);
+            }
+        }
+
+        int widest = 0;
+        for (int j = 1; j < columns; j++)
+        {
+            if (upper[offset + j] - lower[offset + j] > upper[offset + widest] - lower[offset + widest])
+            {
+                widest = j;
+            }
+        }
+        // Identical inputs cannot be split, whatever their number
+        if (to - from <= LEAF_SIZE || columns == 0 || !(upper[offset + widest] > lower[offset + widest]))
+        {
+            for (int i = from; i < to; i++)
+            {
+                for (int j = 0; j < columns; j++)
+                {
+                    sums[offset + j] += inputs.get(order[i], j);
+                }
+            }
+            return 0;
+        }
+
+        int middle = (from + to) >>> 1;
+        select(from, to, middle, widest);
+        left[node] = nodes;
+        int leftDepth = build(from, middle);
+        right[node] = nodes;
+        int rightDepth = build(middle, to);
+        for (int j = 0; j < columns; j++)
+        {
+            sums[offset + j] = sums[left[node] * columns + j] + sums[right[node] * columns + j];
+        }
+        return 1 + Math.max(leftDepth, rightDepth);
+    }
+
+    /**
+     * Reorder order[from, to) so the row at index nth has the value it would
+     * have in column sorted order, with no greater values before it and no
+     * smaller after it.
+     */
+    private void select(int from, int to, int nth, int column)
+    {
+        int low = from;
+        int high = to - 1;
+        while (high > low)
+        {
+            double pivot = inputs.get(order[(low + high) >>> 1], column);
+            int i = low;
+            int j = high;
+            while (i <= j)
+            {
+                while (inputs.get(order[i], column) < pivot)
+                {
+                    i++;
+                }
+                while (inputs.get(order[j], column) > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (nth <= j)
+            {
+                high = j;
+            }
+            else if (nth >= i)
+            {
+                low = i;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+}
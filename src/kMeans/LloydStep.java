@@ -0,0 +1,225 @@
+package kMeans;
+
+import clustering.Dataset;
+import clustering.DistanceMetric;
+import clustering.NearestCenter;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * One Lloyd round as a single parallel pass: the inputs are split into one
+ * contiguous part per thread, and every part assigns its inputs to their
+ * closest centroid while adding them to its own sums and counts per
+ * centroid. The partial sums are then added up in part order, so a round
+ * gives the same centroids however the parts are scheduled. The parts and
+ * their accumulators are made once and reused every round.
+ *
+ * A centroid that is left without inputs stays where it was.
+ */
+class LloydStep
+{
+    // Fewer inputs than this per part are not worth a thread
+    private static final int MIN_PART_ROWS = 1024;
+
+    private final Dataset inputs;
+    private final int k;
+    private final int columns;
+    private final Part[] parts;
+
+    private double[][] clusters;
+    private int[] assignments;
+    private boolean assign;
+
+    LloydStep(Dataset inputs, int k, DistanceMetric metric)
+    {
+        this.inputs = inputs;
+        this.k = k;
+        this.columns = inputs.columns();
+        int rows = inputs.rows();
+        int count = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), rows / MIN_PART_ROWS));
+        parts = new Part[count];
+        for (int i = 0; i < count; i++)
+        {
+            parts[i] = new Part(new NearestCenter(metric), (int) ((long) rows * i / count),
+                    (int) ((long) rows * (i + 1) / count));
+        }
+    }
+
+    /**
+     * Assign every input to its closest centroid and find the new centroids.
+     * @param clusters current centroids
+     * @param assignments filled with the centroid of every input
+     * @return the new centroids
+     */
+    double[][] step(double[][] clusters, int[] assignments)
+    {
+        return run(clusters, assignments, true);
+    }
+
+    /**
+     * Find the new centroids of inputs already assigned.
+     * @param clusters current centroids, kept by clusters left empty
+     * @param assignments centroid of every input
+     * @return the new centroids
+     */
+    double[][] update(double[][] clusters, int[] assignments)
+    {
+        return run(clusters, assignments, false);
+    }
+
+    private double[][] run(double[][] clusters, int[] assignments, boolean assign)
+    {
+        this.clusters = clusters;
+        this.assignments = assignments;
+        this.assign = assign;
+        for (Part part : parts)
+        {
+            part.reinitialize();
+        }
+        if (parts.length == 1)
+        {
+            parts[0].compute();
+        }
+        else
+        {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction()
+            {
+                @Override
+                protected void compute()
+                {
+                    invokeAll(parts);
+                }
+            });
+        }
+
+        double[][] partSums = new double[parts.length][];
+        long[][] partCounts = new long[parts.length][];
+        for (int i = 0; i < parts.length; i++)
+        {
+            partSums[i] = parts[i].sums;
+            partCounts[i] = parts[i].counts;
+        }
+        double[][] newClusters = centroids(clusters, partSums, partCounts, inputs.isSinglePrecision());
+        this.clusters = null;
+        this.assignments = null;
+        return newClusters;
+    }
+
+    /**
+     * Add up the sums and counts per centroid of every part, in part order,
+     * and divide. Centroids without inputs keep their place, and those of
+     * single precision inputs are rounded to float like the inputs.
+     * @param clusters current centroids
+     * @param partSums sums of every part, centroid c at c * columns
+     * @param partCounts counts of every part
+     * @return the new centroids
+     */
+    static double[][] centroids(double[][] clusters, double[][] partSums, long[][] partCounts,
+            boolean singlePrecision)
+    {
+        int k = clusters.length;
+        int columns = clusters[0].length;
+        double[][] newClusters = new double[k][columns];
+        long[] sizes = new long[k];
+        for (int p = 0; p < partSums.length; p++)
+        {
+            for (int c = 0; c < k; c++)
+            {
+                sizes[c] += partCounts[p][c];
+                for (int j = 0; j < columns; j++)
+                {
+                    newClusters[c][j] += partSums[p][c * columns + j];
+                }
+            }
+        }
+
+        for (int c = 0; c < k; c++)
+        {
+            if (sizes[c] == 0)
+            {
+                newClusters[c] = clusters[c].clone();
+                continue;
+            }
+            for (int j = 0; j < columns; j++)
+            {
+                newClusters[c][j] /= sizes[c];
+                if (singlePrecision)
+                {
+                    newClusters[c][j] = (float) newClusters[c][j];
+                }
+            }
+        }
+        return newClusters;
+    }
+
+    /**
+     * Add the counts of every part's search to another search.
+     */
+    void addCounts(NearestCenter search)
+    {
+        for (Part part : parts)
+        {
+            search.addCounts(part.search);
+            part.search.resetCounts();
+        }
+    }
+
+    /**
+     * The inputs [from, to) and their partial sums.
+     */
+    private class Part extends RecursiveAction
+    {
+        private final NearestCenter search;
+        private final int from, to;
+        private final double[] sums;
+        private final long[] counts;
+
+        Part(NearestCenter search, int from, int to)
+        {
+            this.search = search;
+            this.from = from;
+            this.to = to;
+            this.sums = new double[k * columns];
+            this.counts = new long[k];
+        }
+
+        @Override
+        protected void compute()
+        {
+            Arrays.fill(sums, 0.0);
+            Arrays.fill(counts, 0L);
+            for (int i = from; i < to; i++)
+            {
+                if (assign)
+                {
+                    assignments[i] = search.nearest(inputs, i, clusters);
+                }
+                int cluster = assignments[i];
+                counts[cluster]++;
+                add(i, cluster * columns);
+            }
+        }
+
+        private void add(int row, int offset)
+        {
+            int start = inputs.offset(row);
+            if (inputs.isSinglePrecision())
+            {
+                float[] values = inputs.floatValues();
+                for (int j = 0; j < columns; j++)
+                {
+                    sums[offset + j] += values[start + j];
+                }
+            }
+            else
+            {
+                double[] values = inputs.values();
+                for (int j = 0; j < columns; j++)
+                {
+                    sums[offset + j] += values[start + j];
+                }
+            }
+        }
+    }
+}
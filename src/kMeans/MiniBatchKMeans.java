@@ -0,0 +1,357 @@
+package kMeans;
+
+import clustering.Cluster;
+import clustering.Dataset;
+import clustering.DatasetStream;
+import clustering.DistanceMetric;
+import clustering.NearestCenter;
+import clustering.RowStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Mini-batch k-means with the update of Sculley, "Web-scale k-means
+ * clustering": the centroids are moved towards every batch of inputs, so a
+ * dataset can be clustered from a stream in memory bounded by a window of
+ * WINDOW_BATCHES batches. Every input of a batch is assigned to its closest
+ * centroid, which then takes a step towards it with a learning rate of one
+ * over the number of inputs the centroid has had, so each centroid ends up
+ * the mean of its inputs and its steps shrink as it settles.
+ *
+ * Sculley draws every batch at random from the whole dataset, which a stream
+ * read in order cannot do in bounded memory. Instead the initial centroids
+ * are picked with k-means++ from a reservoir sample of one window taken over
+ * the whole stream, and every pass reads the stream a window at a time,
+ * shuffles the window and cuts it into batches. A file sorted by class is
+ * thus only mixed within a window, but the seeds come from all of it.
+ *
+ * Passes over the stream stop when the centroids move less than minDistance
+ * in a pass, or after maxPasses. Labels then take one more pass.
+ */
+public class MiniBatchKMeans implements Cluster
+{
+    // Batches read and shuffled together, and sampled for the seeds
+    private static final int WINDOW_BATCHES = 16;
+
+    private double minDistance;
+    private int numbOfClusters;
+    private int batchSize;
+    private int maxPasses;
+    private boolean verbose;
+    private DistanceMetric metric;
+    private NearestCenter search;
+    // Seed of the initial centroids, null for a new one every run
+    private Long seed;
+
+    public MiniBatchKMeans(double minDistance, int numbOfClusters, int batchSize, int maxPasses, boolean verbose)
+    {
+        this.minDistance = minDistance;
+        this.numbOfClusters = numbOfClusters;
+        this.batchSize = batchSize;
+        this.maxPasses = maxPasses;
+        this.verbose = verbose;
+        this.metric = DistanceMetric.EUCLIDEAN;
+        this.search = new NearestCenter(metric);
+    }
+
+    /**
+     * Metric used to assign inputs to centroids and to measure how far the
+     * centroids move.
+     */
+    public void setDistanceMetric(DistanceMetric metric)
+    {
+        this.metric = metric;
+        this.search = new NearestCenter(metric);
+    }
+
+    /**
+     * Pick the same initial centroids on every run of the same dataset.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @return counts of the dimensions the searches for the closest centroid
+     *         summed and skipped
+     */
+    public NearestCenter getSearch()
+    {
+        return search;
+    }
+
+    public void println(String msg)
+    {
+        if (verbose)
+        {
+            System.out.println(msg);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if there are fewer inputs than clusters
+     */
+    public int[] run(Dataset inputs)
+    {
+        RowStream stream = new DatasetStream(inputs);
+        double[][] clusters;
+        try
+        {
+            clusters = fitStream(stream);
+        }
+        catch (IOException e)
+        {
+            // A dataset in memory is always read whole
+            throw new UncheckedIOException(e);
+        }
+        int[] assignments = new int[inputs.rows()];
+        int[] row = new int[1];
+        label(stream, clusters, cluster -> assignments[row[0]++] = cluster);
+        return assignments;
+    }
+
+    /**
+     * Find the centroids of a stream, reading it from the start as often as
+     * needed. A first pass samples the inputs the initial centroids are
+     * picked from.
+     * @param stream
+     * @return the centroids, or null if the stream could not be read
+     * @throws IllegalArgumentException if the stream has fewer rows than
+     *         there are clusters
+     */
+    public double[][] fit(RowStream stream)
+    {
+        try
+        {
+            return fitStream(stream);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Could not read the dataset: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private double[][] fitStream(RowStream stream) throws IOException
+    {
+        println("--------------------------- Mini-batch kMeans begin --------------------------");
+        search.resetCounts();
+        long runSeed = seed != null ? seed : new Random().nextLong();
+        Random random = new Random(runSeed);
+        int columns = stream.columns();
+        long rowsPerWindow = Math.min((long) WINDOW_BATCHES * batchSize, Integer.MAX_VALUE / Math.max(1, columns));
+        Window window = new Window((int) Math.max(numbOfClusters, rowsPerWindow), columns, random);
+
+        int sampled = window.sample(stream, batchSize);
+        if (sampled < numbOfClusters)
+        {
+            throw new IllegalArgumentException("Too few inputs for " + numbOfClusters + " clusters: " + sampled);
+        }
+        double[][] clusters = CentroidSeeding.plusPlus(window.rows(sampled), numbOfClusters, metric, random.nextLong());
+        long[] counts = new long[numbOfClusters];
+        int[] assignments = new int[batchSize];
+
+        for (int pass = 1; pass <= maxPasses; pass++)
+        {
+            double[][] oldClusters = new double[numbOfClusters][];
+            for (int c = 0; c < numbOfClusters; c++)
+            {
+                oldClusters[c] = clusters[c].clone();
+            }
+            stream.reset();
+            long rows = 0;
+            int count;
+            while ((count = window.fill(stream)) > 0)
+            {
+                window.shuffle(count);
+                for (int start = 0; start < count; start += batchSize)
+                {
+                    update(window.rows(start, Math.min(batchSize, count - start)), clusters, counts, assignments);
+                }
+                rows += count;
+            }
+
+            double distance = avgClusterMovement(oldClusters, clusters);
+            println("Pass " + pass + " over " + rows + " inputs, average movement of centroids: " + distance);
+            if (distance <= minDistance)
+            {
+                break;
+            }
+        }
+
+        println("Dimensions summed: " + search.operations() + ", skipped: " + search.savedOperations());
+        println("--------------------------- Mini-batch kMeans end ---------------------------");
+        return clusters;
+    }
+
+    /**
+     * Pass the closest centroid of every row of a stream to labels, in order.
+     * @param stream
+     * @param clusters
+     * @param labels
+     * @return false if the stream could not be read
+     */
+    public boolean label(RowStream stream, double[][] clusters, IntConsumer labels)
+    {
+        try
+        {
+            stream.reset();
+            Dataset batch;
+            while ((batch = stream.next(batchSize)) != null)
+            {
+                for (int i = 0; i < batch.rows(); i++)
+                {
+                    labels.accept(search.nearest(batch, i, clusters));
+                }
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            System.out.println("Could not read the dataset: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Assign a batch to the centroids as they were before it, then step every
+     * centroid towards its inputs in turn.
+     */
+    private void update(Dataset batch, double[][] clusters, long[] counts, int[] assignments)
+    {
+        int rows = batch.rows();
+        int columns = batch.columns();
+        for (int i = 0; i < rows; i++)
+        {
+            assignments[i] = search.nearest(batch, i, clusters);
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            int cluster = assignments[i];
+            double[] centroid = clusters[cluster];
+            double rate = 1.0 / ++counts[cluster];
+            int offset = batch.offset(i);
+            if (batch.isSinglePrecision())
+            {
+                float[] values = batch.floatValues();
+                for (int j = 0; j < columns; j++)
+                {
+                    centroid[j] += rate * (values[offset + j] - centroid[j]);
+                }
+            }
+            else
+            {
+                double[] values = batch.values();
+                for (int j = 0; j < columns; j++)
+                {
+                    centroid[j] += rate * (values[offset + j] - centroid[j]);
+                }
+            }
+        }
+    }
+
+    public double avgClusterMovement(double[][] oldClusters, double[][] newClusters)
+    {
+        double totalDist = 0.0;
+
+        for (int i = 0; i < oldClusters.length; i++)
+        {
+            totalDist += metric.distance(oldClusters[i], newClusters[i]);
+        }
+
+        return totalDist / oldClusters.length;
+    }
+
+    /**
+     * Rows of a stream held in one array, read a window at a time or sampled
+     * from all of it, with batches cut as views of the array.
+     */
+    private static class Window
+    {
+        private final int capacity;
+        private final int columns;
+        private final double[] values;
+        private final double[] row;
+        private final Random random;
+
+        Window(int capacity, int columns, Random random)
+        {
+            this.capacity = capacity;
+            this.columns = columns;
+            this.values = new double[capacity * columns];
+            this.row = new double[columns];
+            this.random = random;
+        }
+
+        /**
+         * Keep a uniform sample of every row of the stream (reservoir
+         * sampling, Vitter's algorithm R).
+         * @return number of rows sampled, all of them if they fit
+         */
+        int sample(RowStream stream, int batchSize) throws IOException
+        {
+            stream.reset();
+            long seen = 0;
+            Dataset batch;
+            while ((batch = stream.next(batchSize)) != null)
+            {
+                for (int i = 0; i < batch.rows(); i++)
+                {
+                    long slot = seen < capacity ? seen : (long) (random.nextDouble() * (seen + 1));
+                    if (slot < capacity)
+                    {
+                        System.arraycopy(batch.copyRow(i, row), 0, values, (int) slot * columns, columns);
+                    }
+                    seen++;
+                }
+            }
+            return (int) Math.min(seen, capacity);
+        }
+
+        /**
+         * Read the next rows of the stream, as many as fit.
+         * @return number of rows read, 0 at the end of the stream
+         */
+        int fill(RowStream stream) throws IOException
+        {
+            int count = 0;
+            Dataset batch;
+            while (count < capacity && (batch = stream.next(capacity - count)) != null)
+            {
+                for (int i = 0; i < batch.rows(); i++)
+                {
+                    System.arraycopy(batch.copyRow(i, row), 0, values, (count + i) * columns, columns);
+                }
+                count += batch.rows();
+            }
+            return count;
+        }
+
+        /**
+         * Put the first count rows in a random order (Fisher-Yates).
+         */
+        void shuffle(int count)
+        {
+            for (int i = count - 1; i > 0; i--)
+            {
+                int j = random.nextInt(i + 1);
+                System.arraycopy(values, i * columns, row, 0, columns);
+                System.arraycopy(values, j * columns, values, i * columns, columns);
+                System.arraycopy(row, 0, values, j * columns, columns);
+            }
+        }
+
+        Dataset rows(int count)
+        {
+            return rows(0, count);
+        }
+
+        Dataset rows(int start, int count)
+        {
+            return new Dataset(values, count, columns, columns, start * columns);
+        }
+    }
+}
@@ -1,18 +1,184 @@
 package kMeans;
 
 import clustering.Cluster;
+import clustering.Dataset;
+import clustering.DistanceMetric;
+import clustering.EuclideanDistance;
+import clustering.NearestCenter;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class kMeansClusterer implements Cluster
 {
+    public enum Seeding
+    {
+        // k-means|| on large datasets with enough threads, k-means++ otherwise
+        AUTO,
+        PLUS_PLUS,
+        PARALLEL
+    }
+
+    public enum Acceleration
+    {
+        // Kd-tree filtering on datasets of at most KD_TREE_COLUMNS columns,
+        // plain Lloyd otherwise
+        AUTO,
+        NONE,
+        HAMERLY,
+        KD_TREE
+    }
+
+    private static final int PARALLEL_SEEDING_ROWS = 100000;
+    // k-means|| computes about 4 * ROUNDS times the distances of k-means++,
+    // so it only finishes first with more threads than that
+    private static final int PARALLEL_SEEDING_THREADS = 4 * CentroidSeeding.ROUNDS;
+    // Boxes of the kd-tree stop separating centroids well beyond about this
+    // many dimensions
+    private static final int KD_TREE_COLUMNS = 8;
+
     private double minDistance;
     private int numbOfClusters;
     private boolean verbose;
+    private DistanceMetric metric;
+    private NearestCenter search;
+    // How distances are skipped, if at all
+    private Acceleration acceleration = Acceleration.AUTO;
+    private long distanceCalculations;
+    private long avoidedCalculations;
+    private Seeding seeding = Seeding.AUTO;
+    // Seed of the initial centroids, null for a new one every run
+    private Long seed;
+    // Independent runs whose lowest inertia labeling is kept
+    private int restarts = 1;
+    private Restart[] restartResults;
+    // Largest number of clusters X-means may split up to, 0 for a fixed k
+    private int maxClusters;
+    private Restart[] models;
 
     public kMeansClusterer(double minDistance, int numbOfClusters, boolean verbose)
     {
         this.minDistance = minDistance;
         this.numbOfClusters = numbOfClusters;
         this.verbose = verbose;
+        this.metric = DistanceMetric.EUCLIDEAN;
+        this.search = new NearestCenter(metric);
+    }
+
+    /**
+     * Metric used to assign inputs to centroids and to measure how far the
+     * centroids move. Centroids are still means, so metrics other than
+     * Euclidean give k-means-like rather than true k-means clusterings.
+     */
+    public void setDistanceMetric(DistanceMetric metric)
+    {
+        this.metric = metric;
+        this.search = new NearestCenter(metric);
+    }
+
+    /**
+     * @return counts of the dimensions the last run's searches for the
+     *         closest centroid summed and skipped
+     */
+    public NearestCenter getSearch()
+    {
+        return search;
+    }
+
+    /**
+     * Keep distance bounds per input so that most distances are skipped once
+     * the centroids settle. The assignments are the same as without them.
+     * Only Euclidean and Manhattan distances have the bounds, other metrics
+     * run plain Lloyd iterations.
+     */
+    public void setAccelerated(boolean accelerated)
+    {
+        this.acceleration = accelerated ? Acceleration.HAMERLY : Acceleration.NONE;
+    }
+
+    /**
+     * Choose how distances are skipped: Hamerly's bounds per input, or a
+     * kd-tree built once per run that assigns whole boxes of inputs to one
+     * centroid (Kanungo's filtering). Both only work with Euclidean and
+     * Manhattan distances, other metrics run plain Lloyd iterations.
+     */
+    public void setAcceleration(Acceleration acceleration)
+    {
+        this.acceleration = acceleration;
+    }
+
+    /**
+     * Choose how the initial centroids are picked.
+     */
+    public void setSeeding(Seeding seeding)
+    {
+        this.seeding = seeding;
+    }
+
+    /**
+     * Pick the same initial centroids on every run of the same dataset.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Run k-means from this many initial centroids at once, on the common
+     * pool, and keep the labeling with the lowest inertia. Every restart
+     * reads the same dataset and keeps its own centroids and assignments.
+     */
+    public void setRestarts(int restarts)
+    {
+        this.restarts = Math.max(1, restarts);
+    }
+
+    /**
+     * @return every restart of the last run, in the order of their seeds
+     */
+    public Restart[] getRestarts()
+    {
+        return restartResults;
+    }
+
+    /**
+     * Choose k automatically with X-means (Pelleg and Moore): start from
+     * numbOfClusters centroids, try splitting every cluster in two with a
+     * 2-means run on its own inputs, keep the splits that raise the Bayesian
+     * information criterion, and run k-means on every input from the grown
+     * set of centroids. Growing stops when no split helps or maxClusters is
+     * reached, and the labeling of the k with the highest BIC is returned.
+     * Restarts are not run in this mode.
+     * @param maxClusters 0 or at most numbOfClusters for a fixed k
+     */
+    public void setMaxClusters(int maxClusters)
+    {
+        this.maxClusters = maxClusters;
+    }
+
+    /**
+     * @return every k the last X-means run tried, in increasing k, each with
+     *         its inertia and BIC; null if the last run had a fixed k
+     */
+    public Restart[] getModels()
+    {
+        return models;
+    }
+
+    /**
+     * @return distances computed by the last run
+     */
+    public long getDistanceCalculations()
+    {
+        return distanceCalculations;
+    }
+
+    /**
+     * @return distances from inputs to centroids the last run skipped
+     */
+    public long getAvoidedCalculations()
+    {
+        return avoidedCalculations;
     }
 
     public void println(String msg)
@@ -31,167 +197,549 @@ public class kMeansClusterer implements Cluster
         }
     }
 
-    public int[] run(double[][] inputs)
+    public int[] run(Dataset inputs)
     {
         println("--------------------------- kMeans begin --------------------------");
-        double[][][] clusteredData;
+        search.resetCounts();
+        distanceCalculations = 0;
+        avoidedCalculations = 0;
+        long runSeed = seed != null ? seed : new Random().nextLong();
+        Acceleration used = resolveAcceleration(inputs);
+        println("Skipping distances with: " + used);
+        // Restarts share the tree, it only depends on the inputs
+        KdTree tree = used == Acceleration.KD_TREE ? new KdTree(inputs) : null;
+        Restart best;
+        models = null;
+
+        if (maxClusters > numbOfClusters)
+        {
+            best = grow(inputs, runSeed, tree, used);
+            restartResults = models;
+        }
+        else if (restarts <= 1)
+        {
+            best = runOnce(inputs, runSeed, tree, used, verbose);
+            restartResults = new Restart[] {best};
+        }
+        else
+        {
+            // Every restart's seed is drawn from the run's, so a seeded run
+            // repeats whatever order the restarts finish in
+            Random seeds = new Random(runSeed);
+            restartResults = new Restart[restarts];
+            long[] restartSeeds = new long[restarts];
+            for (int r = 0; r < restarts; r++)
+            {
+                restartSeeds[r] = seeds.nextLong();
+            }
+            ForkJoinPool.commonPool().invoke(new RestartTask(inputs, restartSeeds, tree, used, 0, restarts));
+
+            best = restartResults[0];
+            for (int r = 0; r < restarts; r++)
+            {
+                Restart restart = restartResults[r];
+                println("Restart " + r + ": " + restart.getIterations() + " rounds in "
+                        + restart.getMillis() + " ms, inertia " + restart.getInertia());
+                if (restart.getInertia() < best.getInertia())
+                {
+                    best = restart;
+                }
+            }
+            println("Keeping restart " + best.getIndex() + " with inertia " + best.getInertia());
+        }
+
+        for (Restart restart : restartResults)
+        {
+            search.addCounts(restart.search);
+            distanceCalculations += restart.distanceCalculations;
+            avoidedCalculations += restart.avoidedCalculations;
+        }
+        println("Distances computed: " + distanceCalculations + ", avoided: " + avoidedCalculations);
+        println("Dimensions summed: " + search.operations() + ", skipped: " + search.savedOperations());
+        println("--------------------------- kMeans end ---------------------------");
+
+        return best.assignments;
+    }
+
+    /**
+     * Each acceleration is only used with the metrics its pruning holds for,
+     * falling back to plain Lloyd rounds otherwise.
+     */
+    private Acceleration resolveAcceleration(Dataset inputs)
+    {
+        Acceleration used = acceleration;
+        if (used == Acceleration.AUTO)
+        {
+            used = inputs.columns() <= KD_TREE_COLUMNS ? Acceleration.KD_TREE : Acceleration.NONE;
+        }
+        if (used == Acceleration.KD_TREE && !FilteringStep.supports(metric)
+                || used == Acceleration.HAMERLY && !HamerlyBounds.supports(metric))
+        {
+            return Acceleration.NONE;
+        }
+        return used;
+    }
+
+    /**
+     * One k-means run from its own initial centroids. Runs share only the
+     * inputs and the tree, which they do not change, so any number can run
+     * at once.
+     * @param tree kd-tree of the inputs when used is KD_TREE
+     * @param log print every round, false for runs printed by run
+     */
+    private Restart runOnce(Dataset inputs, long runSeed, KdTree tree, Acceleration used, boolean log)
+    {
+        long start = System.nanoTime();
+        double[][] clusters = pickInitialClusterPoints(inputs, runSeed, log);
+        return lloyd(inputs, clusters, runSeed, tree, used, log, start);
+    }
+
+    /**
+     * Run k-means from given centroids until they settle.
+     * @param start System.nanoTime() the run started at
+     */
+    private Restart lloyd(Dataset inputs, double[][] clusters, long runSeed, KdTree tree, Acceleration used,
+            boolean log, long start)
+    {
+        NearestCenter runSearch = new NearestCenter(metric);
+        int[] assignments = new int[inputs.rows()];
         double distance;
-        double[][] clusters = pickInitialClusterPoints(inputs);
+        HamerlyBounds bounds = used == Acceleration.HAMERLY ? new HamerlyBounds(inputs.rows(), metric) : null;
+        FilteringStep filtering = tree != null ? new FilteringStep(tree, clusters.length, metric) : null;
+        LloydStep step = filtering == null ? new LloydStep(inputs, clusters.length, metric) : null;
+        long calculations = 0;
+        int iterations = 0;
 
         do {
-            println("Starting a round of clustering");
-            clusteredData = assignInputsToClusters(inputs, clusters);
-            double[][] newClusters = pickNewClusters(clusteredData);
+            if (log)
+            {
+                println("Starting a round of clustering");
+            }
+            double[][] newClusters;
+            if (bounds != null)
+            {
+                bounds.assign(inputs, clusters, assignments);
+                newClusters = step.update(clusters, assignments);
+            }
+            else if (filtering != null)
+            {
+                newClusters = filtering.step(clusters, assignments);
+            }
+            else
+            {
+                newClusters = step.step(clusters, assignments);
+                calculations += (long) inputs.rows() * clusters.length;
+            }
+            if (log && verbose)
+            {
+                printClusters(newClusters);
+            }
             distance = avgClusterMovement(clusters, newClusters);
-            println("Average movement of centroids for the round was: " + distance);
-            println("Are we going to run another round?" + (distance > this.minDistance));
+            if (log)
+            {
+                println("Average movement of centroids for the round was: " + distance);
+                println("Are we going to run another round?" + (distance > this.minDistance));
+            }
+            if (bounds != null && distance > this.minDistance)
+            {
+                bounds.move(clusters, newClusters, assignments);
+            }
             clusters = newClusters;
+            iterations++;
         } while (distance > this.minDistance);
 
-        println("--------------------------- kMeans end ---------------------------");
-
-        return findInputsIndex(inputs, clusteredData);
+        long avoided = 0;
+        if (bounds != null)
+        {
+            calculations = bounds.calculations();
+            avoided = bounds.avoided();
+        }
+        if (filtering != null)
+        {
+            filtering.addCounts(runSearch);
+            calculations = filtering.calculations();
+            // Lloyd computes the distance from every input to every centroid
+            avoided = (long) iterations * inputs.rows() * clusters.length - calculations;
+        }
+        else
+        {
+            step.addCounts(runSearch);
+        }
+        double inertia = inertia(inputs, clusters, assignments);
+        double bic = bic(inputs, clusters, assignments);
+        return new Restart(runSeed, assignments, clusters, inertia, bic, iterations, System.nanoTime() - start,
+                runSearch, calculations, avoided);
     }
 
-    public int[] findInputsIndex(double[][] inputs, double[][][] clusteredData)
+    /**
+     * X-means: grow the centroids from numbOfClusters by splitting clusters
+     * while that raises their BIC, up to maxClusters.
+     * @return the model with the highest BIC
+     */
+    private Restart grow(Dataset inputs, long runSeed, KdTree tree, Acceleration used)
     {
-        int[] indexes = new int[inputs.length];
+        Random seeds = new Random(runSeed);
+        java.util.List<Restart> tried = new java.util.ArrayList<>();
+        Restart model = runOnce(inputs, seeds.nextLong(), tree, used, false);
+        tried.add(model);
+        println("k = " + model.getK() + ": inertia " + model.getInertia() + ", BIC " + model.getBic());
 
-        for (int i = 0; i < clusteredData.length; i++)
+        while (model.getK() < maxClusters)
         {
-            for (int j = 0; j < clusteredData[i].length; j++)
+            double[][] clusters = model.clusters;
+            int k = clusters.length;
+            int[][] members = members(model.assignments, k);
+
+            // Split every cluster in two on its own inputs
+            double[][][] children = new double[k][][];
+            double[] gains = new double[k];
+            int splits = 0;
+            for (int c = 0; c < k; c++)
             {
-                for (int k = 0; k < inputs.length; k++)
+                Dataset cluster = inputs.permute(members[c]);
+                // A model needs more inputs than parameters to be scored
+                if (cluster.rows() <= 2 * (inputs.columns() + 1))
                 {
-                    if (inputs[k] == clusteredData[i][j])
+                    continue;
+                }
+                long childSeed = seeds.nextLong();
+                double[][] start = CentroidSeeding.plusPlus(cluster, 2, metric, childSeed);
+                Restart split = lloyd(cluster, start, childSeed, null, Acceleration.NONE, false, System.nanoTime());
+                search.addCounts(split.search);
+                distanceCalculations += split.distanceCalculations;
+                double parent = bic(cluster, new double[][] {clusters[c]}, new int[cluster.rows()]);
+                if (split.getBic() > parent)
+                {
+                    children[c] = split.clusters;
+                    gains[c] = split.getBic() - parent;
+                    splits++;
+                }
+            }
+            if (splits == 0)
+            {
+                break;
+            }
+
+            // Keep the splits that raise the BIC most when they would pass maxClusters
+            while (k + splits > maxClusters)
+            {
+                int weakest = -1;
+                for (int c = 0; c < k; c++)
+                {
+                    if (children[c] != null && (weakest < 0 || gains[c] < gains[weakest]))
                     {
-                        indexes[k] = i;
-                        break;
+                        weakest = c;
                     }
                 }
+                children[weakest] = null;
+                splits--;
+            }
+
+            // The first child takes the parent's place, the second is added at the end
+            double[][] grown = java.util.Arrays.copyOf(clusters, k + splits);
+            int next = k;
+            for (int c = 0; c < k; c++)
+            {
+                if (children[c] != null)
+                {
+                    grown[c] = children[c][0];
+                    grown[next++] = children[c][1];
+                }
             }
+            model = lloyd(inputs, grown, runSeed, tree, used, false, System.nanoTime());
+            tried.add(model);
+            println("k = " + model.getK() + ": inertia " + model.getInertia() + ", BIC " + model.getBic());
         }
-        return indexes;
-    }
 
+        models = tried.toArray(new Restart[0]);
+        Restart best = models[0];
+        for (int i = 0; i < models.length; i++)
+        {
+            models[i].index = i;
+            if (models[i].getBic() > best.getBic())
+            {
+                best = models[i];
+            }
+        }
+        println("Keeping k = " + best.getK() + " with BIC " + best.getBic());
+        return best;
+    }
 
-    public double distanceFunc(double[] x1, double[] x2)
+    /**
+     * Rows of every cluster, in row order.
+     */
+    private static int[][] members(int[] assignments, int k)
     {
-        double dist = 0;
-
-        for (int i = 0; i < x1.length; i++)
+        int[] sizes = new int[k];
+        for (int cluster : assignments)
         {
-            dist += (x1[i] - x2[i]) * (x1[i] - x2[i]);
+            sizes[cluster]++;
         }
-
-        return Math.sqrt(dist);
+        int[][] members = new int[k][];
+        for (int c = 0; c < k; c++)
+        {
+            members[c] = new int[sizes[c]];
+        }
+        int[] filled = new int[k];
+        for (int i = 0; i < assignments.length; i++)
+        {
+            int cluster = assignments[i];
+            members[cluster][filled[cluster]++] = i;
+        }
+        return members;
     }
 
-    public double[][] pickInitialClusterPoints(double[][] inputs)
+    /**
+     * Bayesian information criterion of the clustering as a mixture of
+     * spherical Gaussians with one shared variance, as in X-means. The
+     * likelihood comes from squared Euclidean distances whatever the metric,
+     * since that is the model the criterion scores. Higher is better.
+     */
+    static double bic(Dataset inputs, double[][] clusters, int[] assignments)
     {
-        int numbOfClusters = 0;
-        int size = this.numbOfClusters;
-        double[][] clusters = new double[size][];
-        int index = 0;
+        int rows = inputs.rows();
+        int columns = inputs.columns();
+        int k = clusters.length;
+        long[] sizes = new long[k];
+        double squares = 0.0;
+        for (int i = 0; i < rows; i++)
+        {
+            sizes[assignments[i]]++;
+            squares += inputs.squaredDistance(i, clusters[assignments[i]]);
+        }
+        if (rows <= k || columns == 0)
+        {
+            return Double.NEGATIVE_INFINITY;
+        }
+        // Maximum likelihood variance per dimension, unbiased for the k means
+        double variance = squares / ((double) columns * (rows - k));
+        if (!(variance > 0))
+        {
+            return Double.NEGATIVE_INFINITY;
+        }
 
-        while (numbOfClusters < size)
+        double likelihood = -rows * columns / 2.0 * Math.log(2 * Math.PI * variance)
+                - columns * (rows - k) / 2.0;
+        for (int c = 0; c < k; c++)
         {
-            if (Math.random() < 0.01)
+            if (sizes[c] > 0)
             {
-                println("Selecting point: " + (index % inputs.length) + " To be an initial cluster");
-                clusters[numbOfClusters] = inputs[index % inputs.length];
-                numbOfClusters++;
+                likelihood += sizes[c] * Math.log((double) sizes[c] / rows);
             }
-            index++;
         }
-
-        return clusters;
+        // k - 1 mixing weights, k means and the variance
+        double parameters = (double) k * (columns + 1);
+        return likelihood - parameters / 2 * Math.log(rows);
     }
 
-    public double[][][] assignInputsToClusters(double[][] inputs, double[][] clusters)
+    /**
+     * Sum over the inputs of the distance to their centroid, squared for
+     * Euclidean distances as in the k-means objective.
+     */
+    private double inertia(Dataset inputs, double[][] clusters, int[] assignments)
     {
-        println("Assigning inputs to Clusters");
-        double[][][] clusteredData = new double[clusters.length][][];
-        int[] inputsClusters = new int[inputs.length];
-        int[] numbOfNodesInCluster = new int[clusters.length];
-        for (int i = 0; i < inputs.length; i++)
+        boolean euclidean = metric instanceof EuclideanDistance;
+        double total = 0.0;
+        for (int i = 0; i < inputs.rows(); i++)
         {
-            double closestDist = distanceFunc(inputs[i], clusters[0]);
-            int closestIndex = 0;
-            for (int j = 1; j < clusters.length; j++)
-            {
-                double currentDist = distanceFunc(inputs[i], clusters[j]);
-                if (currentDist < closestDist)
-                {
-                    closestDist = currentDist;
-                    closestIndex = j;
-                }
-            }
-            println("Assigning input: " + i + " to cluster: " + closestIndex);
-            inputsClusters[i] = closestIndex;
-            numbOfNodesInCluster[closestIndex]++;
+            double[] centroid = clusters[assignments[i]];
+            total += euclidean ? inputs.squaredDistance(i, centroid) : metric.distance(inputs, i, centroid);
         }
+        return total;
+    }
 
-        for (int i = 0; i < clusters.length; i++)
-        {
-            clusteredData[i] = new double[numbOfNodesInCluster[i]][];
-        }
+    public double distanceFunc(double[] x1, double[] x2)
+    {
+        return metric.distance(x1, x2);
+    }
+
+    /**
+     * Distance between a row of the dataset and a centroid, read straight
+     * from the dataset's backing array
+     */
+    public double distanceFunc(Dataset inputs, int row, double[] x2)
+    {
+        return metric.distance(inputs, row, x2);
+    }
 
-        int[] currentIndex = new int[clusters.length];
+    /**
+     * Pick the initial centroids with k-means++, or k-means|| on large datasets
+     * when there are enough threads
+     */
+    public double[][] pickInitialClusterPoints(Dataset inputs)
+    {
+        return pickInitialClusterPoints(inputs, seed != null ? seed : new Random().nextLong(), true);
+    }
 
-        for (int i = 0; i < inputs.length; i++)
+    private double[][] pickInitialClusterPoints(Dataset inputs, long runSeed, boolean log)
+    {
+        boolean parallel = seeding == Seeding.PARALLEL
+                || (seeding == Seeding.AUTO && inputs.rows() >= PARALLEL_SEEDING_ROWS
+                    && ForkJoinPool.getCommonPoolParallelism() > PARALLEL_SEEDING_THREADS);
+        if (log)
         {
-            int clusterIndex = inputsClusters[i];
-            clusteredData[clusterIndex][currentIndex[clusterIndex]] = inputs[i];
-            currentIndex[clusterIndex]++;
+            println("Seeding " + this.numbOfClusters + " initial clusters with " + (parallel ? "k-means||" : "k-means++"));
         }
 
-        return clusteredData;
+        return parallel
+                ? CentroidSeeding.parallel(inputs, this.numbOfClusters, metric, runSeed)
+                : CentroidSeeding.plusPlus(inputs, this.numbOfClusters, metric, runSeed);
     }
 
-    public double[] getClusterCenter(double[][] cluster)
+    public void printClusters(double[][] clusters)
     {
-        double[] total = new double[cluster[0].length];
-        for (int i = 0; i < cluster.length; i++)
+        for (int i = 0; i < clusters.length; i++)
         {
-            for (int j = 0; j < cluster[i].length; j++)
+            println("Calculated new centroid for a cluster: ");
+            for (int j = 0; j < clusters[i].length; j++)
             {
-                total[j] += cluster[i][j];
+                print(clusters[i][j] + ", ");
             }
+            println("");
         }
+    }
 
-        println("Calculated new centroid for a cluster: ");
-        for (int i = 0; i < total.length; i++)
+    public double avgClusterMovement(double[][] oldClusters, double[][] newClusters)
+    {
+        double totalDist = 0.0;
+
+        for (int i = 0; i < oldClusters.length; i++)
         {
-            total[i] /= cluster.length;
-            print(total[i] + ", ");
+            totalDist = distanceFunc(oldClusters[i], newClusters[i]);
         }
-        println("");
 
-        return total;
+        return totalDist / oldClusters.length;
     }
 
-    public double[][] pickNewClusters(double[][][] clusteredData)
+    /**
+     * Runs the restarts [from, to).
+     */
+    private class RestartTask extends RecursiveAction
     {
-        double[][] newClusters = new double[clusteredData.length][];
+        private final Dataset inputs;
+        private final long[] seeds;
+        private final KdTree tree;
+        private final Acceleration used;
+        private final int from, to;
 
-        for (int i = 0; i < newClusters.length; i++)
+        RestartTask(Dataset inputs, long[] seeds, KdTree tree, Acceleration used, int from, int to)
         {
-            newClusters[i] = getClusterCenter(clusteredData[i]);
+            this.inputs = inputs;
+            this.seeds = seeds;
+            this.tree = tree;
+            this.used = used;
+            this.from = from;
+            this.to = to;
         }
 
-        return newClusters;
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                Restart restart = runOnce(inputs, seeds[from], tree, used, false);
+                restart.index = from;
+                restartResults[from] = restart;
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RestartTask(inputs, seeds, tree, used, from, middle),
+                    new RestartTask(inputs, seeds, tree, used, middle, to));
+        }
     }
 
-    public double avgClusterMovement(double[][] oldClusters, double[][] newClusters)
+    /**
+     * Outcome of one k-means run: a restart, or one k tried by X-means.
+     */
+    public static class Restart
     {
-        double totalDist = 0.0;
+        private final long seed;
+        private final int[] assignments;
+        private final double[][] clusters;
+        private final double inertia;
+        private final double bic;
+        private final int iterations;
+        private final long nanos;
+        private final NearestCenter search;
+        private final long distanceCalculations;
+        private final long avoidedCalculations;
+        private int index;
+
+        Restart(long seed, int[] assignments, double[][] clusters, double inertia, double bic, int iterations,
+                long nanos, NearestCenter search, long distanceCalculations, long avoidedCalculations)
+        {
+            this.seed = seed;
+            this.assignments = assignments;
+            this.clusters = clusters;
+            this.inertia = inertia;
+            this.bic = bic;
+            this.iterations = iterations;
+            this.nanos = nanos;
+            this.search = search;
+            this.distanceCalculations = distanceCalculations;
+            this.avoidedCalculations = avoidedCalculations;
+        }
 
-        for (int i = 0; i < oldClusters.length; i++)
+        public int getIndex()
         {
-            totalDist = distanceFunc(oldClusters[i], newClusters[i]);
+            return index;
         }
 
-        return totalDist / oldClusters.length;
+        /**
+         * @return seed of the restart's initial centroids
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        public int[] getAssignments()
+        {
+            return assignments;
+        }
+
+        public double[][] getClusters()
+        {
+            return clusters;
+        }
+
+        /**
+         * @return sum of the distances from every input to its centroid,
+         *         squared for Euclidean distances
+         */
+        public double getInertia()
+        {
+            return inertia;
+        }
+
+        /**
+         * @return number of centroids
+         */
+        public int getK()
+        {
+            return clusters.length;
+        }
+
+        /**
+         * @return Bayesian information criterion of the labeling, higher is
+         *         better
+         */
+        public double getBic()
+        {
+            return bic;
+        }
+
+        /**
+         * @return rounds of assignment and update until the centroids settled
+         */
+        public int getIterations()
+        {
+            return iterations;
+        }
+
+        public double getMillis()
+        {
+            return nanos / 1e6;
+        }
     }
 }